@@ -0,0 +1,37 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Date parsing on inputs that match and on free text that does not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DatesBenchmark {
+
+    @Param({ "2019-12-02 1800", "2019-12-02 18:00", "2019-12-02", "2019-12-02 evening", "tonight",
+            "next monday after lunch" })
+    public String input;
+
+    @Benchmark
+    public LocalDateTime tryParseDateTime() {
+        return Dates.tryParseDateTime(input);
+    }
+
+    @Benchmark
+    public LocalDate tryParseDate() {
+        return Dates.tryParseDate(input);
+    }
+}
@@ -0,0 +1,72 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import garfield.task.Task;
+
+/**
+ * Search and full-list rendering over lists of increasing size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TaskListBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    private TaskList tasks;
+
+    @Setup
+    public void setUp() {
+        tasks = populate(size);
+    }
+
+    /** Mixed list of todos, deadlines and events with a few rare words. */
+    static TaskList populate(int size) {
+        TaskList list = new TaskList();
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0 -> list.addTodo("read book " + i);
+                case 1 -> list.addDeadline("return book " + i, "2019-12-02");
+                default -> list.addEvent("meet boss " + i, "2019-12-02 1400", "2019-12-02 1500");
+            }
+        }
+        list.addTodo("buy zucchini");
+        return list;
+    }
+
+    @Benchmark
+    public List<Task> findRare() {
+        return tasks.find("zucchini");
+    }
+
+    @Benchmark
+    public List<Task> findCommon() {
+        return tasks.find("boss");
+    }
+
+    @Benchmark
+    public List<Task> findShortKeyword() {
+        return tasks.find("bo");
+    }
+
+    @Benchmark
+    public void renderList(Blackhole bh) {
+        for (Task t : tasks.asList()) {
+            bh.consume(t.toString());
+        }
+    }
+}
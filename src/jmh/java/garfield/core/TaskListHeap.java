@@ -0,0 +1,32 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained heap of an ordinary {@link TaskList} against a compact one holding
+ * the same tasks, measured with JOL by walking each object graph.
+ *
+ * <p>
+ * Run with {@code gradlew heapCompare [-Psize=N]}.
+ */
+public final class TaskListHeap {
+
+    private TaskListHeap() {
+    }
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        TaskList eager = TaskListBenchmark.populate(size);
+        report("eager", GraphLayout.parseInstance(eager), eager.size());
+        TaskList compact = TaskList.compact(eager.asList());
+        eager = null;
+        report("compact", GraphLayout.parseInstance(compact), compact.size());
+    }
+
+    private static void report(String name, GraphLayout layout, int size) {
+        System.out.printf("%-8s %,14d bytes %,12d objects %8.1f bytes/task%n",
+                name, layout.totalSize(), layout.totalCount(), layout.totalSize() / (double) size);
+        System.out.println(layout.toFootprint());
+    }
+}
@@ -0,0 +1,74 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.gui;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * End-to-end {@link Engine#reply(String)} latency, including journaling.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EngineBenchmark {
+
+    @Param({ "1000", "100000" })
+    public int size;
+
+    private Path dir;
+    private Engine engine;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("garfield-bench");
+        engine = new Engine(dir.resolve("garfield.jsonl"));
+        for (int i = 0; i < size; i++) {
+            engine.reply(i % 2 == 0 ? "todo read book " + i : "deadline return book " + i + " /by 2019-12-02");
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        engine.shutdown();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public String listFirstPage() {
+        return engine.reply("list");
+    }
+
+    @Benchmark
+    public String find() {
+        return engine.reply("find book 42");
+    }
+
+    @Benchmark
+    public String markThenUnmark() {
+        engine.reply("mark 1");
+        return engine.reply("unmark 1");
+    }
+
+    @Benchmark
+    public String unknownCommand() {
+        return engine.reply("blorp");
+    }
+}
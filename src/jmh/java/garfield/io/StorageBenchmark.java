@@ -0,0 +1,87 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import garfield.task.Deadline;
+import garfield.task.Event;
+import garfield.task.Task;
+import garfield.task.Todo;
+
+/**
+ * Full snapshot load and save at several file sizes and in both formats.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+
+    @Param({ "1000", "100000", "1000000" })
+    public int size;
+
+    @Param({ "NDJSON", "BINARY" })
+    public Storage.Format format;
+
+    private Path dir;
+    private Path file;
+    private List<Task> tasks;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("garfield-bench");
+        file = dir.resolve("garfield.data");
+        tasks = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            switch (i % 3) {
+                case 0 -> tasks.add(new Todo("read book " + i));
+                case 1 -> tasks.add(new Deadline("return book " + i, i % 2 == 0 ? "2019-12-02" : "tonight"));
+                default -> tasks.add(new Event("meet boss " + i, "2019-12-02 1400", "later"));
+            }
+        }
+        Storage s = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, format);
+        s.save(tasks);
+        s.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.deleteIfExists(p);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Task> load() throws IOException {
+        Storage s = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, format);
+        List<Task> loaded = s.load();
+        s.close();
+        return loaded;
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        Storage s = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, format);
+        s.save(tasks);
+        s.close();
+    }
+}
@@ -0,0 +1,42 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import garfield.core.GarfieldException;
+
+/**
+ * Parse throughput per command type, in parses per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParserBenchmark {
+
+    @Param({
+        "bye",
+        "list",
+        "list 3 --page-size 200",
+        "todo read book",
+        "deadline return book /by 2019-12-02",
+        "event proj mtg /from 2019-12-02 1400 /to 2019-12-02 1600",
+        "mark 12",
+        "unmark 12",
+        "delete 12",
+        "find book"
+    })
+    public String input;
+
+    @Benchmark
+    public Parser.Parsed parse() throws GarfieldException {
+        return Parser.parse(input);
+    }
+}
@@ -0,0 +1,301 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Deadline;
+import garfield.task.Event;
+import garfield.task.Task;
+import garfield.task.Todo;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Tasks stored column by column instead of one object graph each.
+ *
+ * <p>
+ * Every task is a type byte, a done bit, an id, a description handle into a
+ * {@link TextArena}, and for deadlines and events the schedule texts (pooled)
+ * plus their parsed dates as epoch values. That is about 40 bytes and the
+ * description's UTF-8 bytes, against several hundred for a {@code Deadline}
+ * with its strings and dates.
+ *
+ * <p>
+ * {@link #get} builds an ordinary {@link Todo}, {@link Deadline} or
+ * {@link Event} view from the columns. Views are only weakly cached: while
+ * anyone holds a view, {@code get} returns that same object, and once none is
+ * held it is collected and the next {@code get} builds a fresh one. A change
+ * made to a view must therefore be written back with {@link #store}, which
+ * {@link TaskList} does for every change it makes.
+ *
+ * <p>
+ * Reads are safe from any thread. {@link #store} needs a single writer at a
+ * time; readers never see one of its changes half done.
+ */
+public final class ColumnarTasks extends AbstractList<Task> implements RandomAccess {
+    private static final VarHandle VIEW = MethodHandles.arrayElementVarHandle(View[].class);
+
+    private static final int NONE = 0;
+    private static final int DATE = 1;
+    private static final int DATE_TIME = 2;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    /** A weakly held view that knows its position, so a cleared one can be dropped. */
+    private static final class View extends WeakReference<Task> {
+        final int index;
+
+        View(Task task, int index, ReferenceQueue<Task> queue) {
+            super(task, queue);
+            this.index = index;
+        }
+    }
+
+    private final int size;
+    private final byte[] types;
+    private final BitSet done;
+    private final long[] ids;
+    private final int[] descriptions;
+    /** Deadline {@code by} or event {@code from} text. */
+    private final int[] startTexts;
+    /** Event {@code to} text. */
+    private final int[] endTexts;
+    /** How {@link #starts} and {@link #ends} were parsed: two bits each. */
+    private final byte[] kinds;
+    /** Epoch second for a date-time, epoch day for a date. */
+    private final long[] starts;
+    private final long[] ends;
+    private final TextArena text = new TextArena();
+    private final boolean hasAscendingIds;
+
+    private final View[] views;
+    private final ReferenceQueue<Task> cleared = new ReferenceQueue<>();
+    private final StampedLock lock = new StampedLock();
+
+    private ColumnarTasks(List<Task> tasks) {
+        int size = tasks.size();
+        this.size = size;
+        this.types = new byte[size];
+        this.done = new BitSet(size);
+        this.ids = new long[size];
+        this.descriptions = new int[size];
+        this.startTexts = new int[size];
+        this.endTexts = new int[size];
+        this.kinds = new byte[size];
+        this.starts = new long[size];
+        this.ends = new long[size];
+        this.views = new View[size];
+        boolean ascending = true;
+        int i = 0;
+        for (Task t : tasks) {
+            types[i] = (byte) (t instanceof Deadline ? 'D' : t instanceof Event ? 'E' : 'T');
+            ids[i] = t.getId();
+            ascending &= ids[i] > 0 && (i == 0 || ids[i] > ids[i - 1]);
+            descriptions[i] = text.add(t.getDescription());
+            write(i, t);
+            i++;
+        }
+        this.hasAscendingIds = ascending;
+    }
+
+    /** Copies {@code tasks} into columns; the originals are not kept. */
+    public static ColumnarTasks of(List<Task> tasks) {
+        return new ColumnarTasks(tasks);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /** Returns the view of the task at {@code index}, building one if none is held. */
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size);
+        expungeCleared();
+        View v = (View) VIEW.getAcquire(views, index);
+        Task t = v == null ? null : v.get();
+        while (t == null) {
+            Task built = build(index);
+            View mine = new View(built, index, cleared);
+            View current = (View) VIEW.compareAndExchangeRelease(views, index, v, mine);
+            if (current == v) {
+                return built;
+            }
+            v = current;
+            t = v == null ? null : v.get();
+        }
+        return t;
+    }
+
+    /**
+     * Writes the done flag and schedule of {@code t}, a view of the task at
+     * {@code index}, back to the columns.
+     */
+    public void store(int index, Task t) {
+        Objects.checkIndex(index, size);
+        assert t.getId() == ids[index] : "store must get a view of the same task";
+        long stamp = lock.writeLock();
+        try {
+            write(index, t);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Stable id of the task at {@code index}, read without building the task. */
+    public long getId(int index) {
+        Objects.checkIndex(index, size);
+        return ids[index];
+    }
+
+    /** Whether ids strictly increase with position and none is missing. */
+    public boolean hasAscendingIds() {
+        return hasAscendingIds;
+    }
+
+    /** Position of the task with {@code id}, or {@code -1}; needs {@link #hasAscendingIds()}. */
+    public int indexOfId(long id) {
+        assert hasAscendingIds : "indexOfId needs ascending ids";
+        int i = Arrays.binarySearch(ids, id);
+        return i < 0 ? -1 : i;
+    }
+
+    /** Whether the description of the task at {@code index} contains lowercase {@code keyword}. */
+    boolean descriptionContains(int index, String keyword) {
+        return text.containsLowercase(descriptions[index], keyword);
+    }
+
+    boolean isDeadline(int index) {
+        return types[index] == 'D';
+    }
+
+    boolean isDone(int index) {
+        long stamp = lock.tryOptimisticRead();
+        boolean isDone = done.get(index);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                isDone = done.get(index);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return isDone;
+    }
+
+    /** Same as {@link TimeIndex#keyOf} of the task at {@code index}, without building it. */
+    long timeKey(int index) {
+        long stamp = lock.tryOptimisticRead();
+        long key = timeKeyUnlocked(index);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                key = timeKeyUnlocked(index);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        return key;
+    }
+
+    /** Bytes held by the text arena, for heap reports. */
+    long textBytes() {
+        return text.size();
+    }
+
+    private long timeKeyUnlocked(int index) {
+        int kind = kinds[index] & 3;
+        if (types[index] == 'T' || kind == NONE) {
+            return Long.MIN_VALUE;
+        }
+        if (kind == DATE_TIME) {
+            return starts[index];
+        }
+        long day = starts[index] * SECONDS_PER_DAY;
+        return types[index] == 'D' ? day + SECONDS_PER_DAY - 1 : day;
+    }
+
+    /** Must be the only writer: while constructing or holding the write lock. */
+    private void write(int index, Task t) {
+        done.set(index, t.isDone());
+        if (t instanceof Deadline d) {
+            startTexts[index] = text.addPooled(d.getBy());
+            starts[index] = epoch(d.getDateTime(), d.getDate());
+            kinds[index] = (byte) kind(d.getDateTime(), d.getDate());
+        } else if (t instanceof Event e) {
+            startTexts[index] = text.addPooled(e.getFrom());
+            endTexts[index] = text.addPooled(e.getTo());
+            starts[index] = epoch(e.getFromDateTime(), e.getFromDate());
+            ends[index] = epoch(e.getToDateTime(), e.getToDate());
+            kinds[index] = (byte) (kind(e.getFromDateTime(), e.getFromDate())
+                    | kind(e.getToDateTime(), e.getToDate()) << 2);
+        }
+    }
+
+    private Task build(int index) {
+        String desc = text.get(descriptions[index]);
+        Task t;
+        long stamp = lock.readLock();
+        try {
+            int kind = kinds[index];
+            switch (types[index]) {
+                case 'D':
+                    t = new Deadline(desc, text.get(startTexts[index]),
+                            dateTime(kind, starts[index]), date(kind, starts[index]));
+                    break;
+                case 'E':
+                    t = new Event(desc, text.get(startTexts[index]), text.get(endTexts[index]),
+                            dateTime(kind, starts[index]), date(kind, starts[index]),
+                            dateTime(kind >> 2, ends[index]), date(kind >> 2, ends[index]));
+                    break;
+                default:
+                    t = new Todo(desc);
+                    break;
+            }
+            if (done.get(index)) {
+                t.markAsDone();
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        if (ids[index] > 0) {
+            t.setId(ids[index]);
+        }
+        return t;
+    }
+
+    /** Forgets views that have been collected so their slots do not pin the references. */
+    private void expungeCleared() {
+        for (Object r; (r = cleared.poll()) != null; ) {
+            View v = (View) r;
+            VIEW.compareAndSet(views, v.index, v, null);
+        }
+    }
+
+    private static int kind(LocalDateTime dt, LocalDate d) {
+        return dt != null ? DATE_TIME : d != null ? DATE : NONE;
+    }
+
+    private static long epoch(LocalDateTime dt, LocalDate d) {
+        return dt != null ? dt.toEpochSecond(ZoneOffset.UTC) : d != null ? d.toEpochDay() : 0;
+    }
+
+    private static LocalDateTime dateTime(int kind, long epoch) {
+        return (kind & 3) == DATE_TIME ? LocalDateTime.ofEpochSecond(epoch, 0, ZoneOffset.UTC) : null;
+    }
+
+    private static LocalDate date(int kind, long epoch) {
+        return (kind & 3) == DATE ? LocalDate.ofEpochDay(epoch) : null;
+    }
+}
@@ -0,0 +1,283 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.io.LoadReport;
+import garfield.io.Storage;
+import garfield.parser.Parser;
+import garfield.task.Task;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+
+/**
+ * The single command-execution core shared by the CLI loop and the GUI engine.
+ *
+ * <p>
+ * Applies parsed commands to the {@link TaskList}, journals every mutation to
+ * {@link Storage} and returns a {@link CommandResult} for the front end to
+ * render.
+ *
+ * <p>
+ * Between {@code begin} and {@code commit} mutations are applied in memory
+ * only and the whole list is saved once on commit, so bulk edits cost one
+ * snapshot write instead of one journal record each. Changes made in an open
+ * batch are lost if the process dies before the commit.
+ */
+public class CommandExecutor {
+    private final TaskList tasks;
+    private final Storage storage;
+    private volatile ReminderScheduler reminders;
+    private boolean inBatch;
+    private int batched;
+
+    public CommandExecutor(TaskList tasks, Storage storage) {
+        assert tasks != null && storage != null : "CommandExecutor needs tasks and storage";
+        this.tasks = tasks;
+        this.storage = storage;
+    }
+
+    /**
+     * Loads tasks from {@code file} (starting empty if that fails), keeping
+     * one backup of the previous snapshot, and starts background flushing.
+     */
+    public static CommandExecutor open(Path file) {
+        Storage storage = new Storage(file);
+        storage.setBackupCount(1);
+        TaskList tasks;
+        try {
+            tasks = new TaskList(storage.load());
+        } catch (Exception e) {
+            System.err.println("Load failed, starting empty: " + e.getMessage());
+            tasks = new TaskList();
+        }
+        if (tasks.getAssignedOnLoad() > 0) {
+            try {
+                storage.save(tasks.asList());
+            } catch (IOException e) {
+                System.err.println("Save failed: " + e.getMessage());
+            }
+        }
+        storage.trackChanges(tasks);
+        storage.scheduleFlushes(Storage.DEFAULT_FLUSH_INTERVAL);
+        return new CommandExecutor(tasks, storage);
+    }
+
+    public TaskList getTasks() {
+        return tasks;
+    }
+
+    /** What loading the list from disk read and dropped. */
+    public LoadReport getLoadReport() {
+        return storage.getLastLoadReport();
+    }
+
+    /**
+     * Starts keeping {@code scheduler} in step with the list: every current
+     * task is scheduled now, and later adds, snoozes, marks and deletes
+     * re-key it.
+     */
+    public synchronized void setReminders(ReminderScheduler scheduler) {
+        this.reminders = scheduler;
+        scheduler.scheduleAll(tasks.asList());
+    }
+
+    /**
+     * Executes one parsed command. Safe to call from several threads: queries
+     * read the list's published snapshot without waiting, and mutations are
+     * serialized together with their journal writes.
+     *
+     * @param p the parsed command
+     * @return what happened, for the front end to render
+     * @throws GarfieldException if the command cannot be applied
+     */
+    public CommandResult execute(Parser.Parsed p) throws GarfieldException {
+        switch (p.type) {
+            case LIST: {
+                List<Task> snapshot = tasks.asList();
+                Page page = null;
+                if (p.page != null || p.pageSize != null) {
+                    page = Page.of(snapshot.size(), p.page == null ? 1 : p.page,
+                            p.pageSize == null ? Page.DEFAULT_SIZE : p.pageSize);
+                }
+                return CommandResult.list(snapshot, page);
+            }
+            case FIND:
+                return CommandResult.found(tasks.find(p.desc), tasks.size());
+            case DUE: {
+                LocalDate day = Dates.tryParseDate(p.by);
+                if (day == null) {
+                    throw new GarfieldException("Usage: due <yyyy-MM-dd>");
+                }
+                return CommandResult.scheduled("due on " + Dates.format(day), tasks.dueOn(day), tasks.size());
+            }
+            case BETWEEN: {
+                LocalDateTime from = bound(p.from, LocalTime.MIN);
+                LocalDateTime to = bound(p.to, LocalTime.MAX);
+                return CommandResult.scheduled("between " + label(p.from) + " and " + label(p.to),
+                        tasks.between(from, to), tasks.size());
+            }
+            case OVERDUE:
+                return CommandResult.scheduled("overdue", tasks.overdue(LocalDateTime.now()), tasks.size());
+            case STATS:
+                return CommandResult.stats("Last load: " + getLoadReport(), tasks.size());
+            default:
+                return write(p);
+        }
+    }
+
+    /** Mutations run one at a time so journal order always matches list order. */
+    private synchronized CommandResult write(Parser.Parsed p) throws GarfieldException {
+        switch (p.type) {
+            case BYE: {
+                try {
+                    if (inBatch) {
+                        commitBatch();
+                    }
+                    storage.flush();
+                } catch (IOException e) {
+                    System.err.println("Save failed: " + e.getMessage());
+                }
+                return CommandResult.bye(tasks.size());
+            }
+            case BEGIN: {
+                if (inBatch) {
+                    throw new GarfieldException("A batch is already open. Use: commit");
+                }
+                inBatch = true;
+                batched = 0;
+                return CommandResult.of(CommandResult.Kind.BEGUN, null, tasks.size());
+            }
+            case COMMIT: {
+                if (!inBatch) {
+                    throw new GarfieldException("No batch is open. Use: begin");
+                }
+                int changes = batched;
+                try {
+                    commitBatch();
+                } catch (IOException e) {
+                    throw new GarfieldException("Save failed: " + e.getMessage());
+                }
+                return CommandResult.committed(changes, tasks.size());
+            }
+            case TODO:
+                return added(tasks.addTodo(p.desc));
+            case DEADLINE:
+                return added(tasks.addDeadline(p.desc, p.by));
+            case EVENT:
+                return added(tasks.addEvent(p.desc, p.from, p.to));
+            case MARK: {
+                Task t = tasks.mark(p.index);
+                persist(s -> s.appendMarked(p.index, true));
+                if (reminders != null) {
+                    reminders.cancel(t);
+                }
+                return CommandResult.of(CommandResult.Kind.MARKED, t, tasks.size());
+            }
+            case UNMARK: {
+                Task t = tasks.unmark(p.index);
+                persist(s -> s.appendMarked(p.index, false));
+                remind(t);
+                return CommandResult.of(CommandResult.Kind.UNMARKED, t, tasks.size());
+            }
+            case DELETE: {
+                Task t = tasks.delete(p.index);
+                persist(s -> s.appendDeleted(p.index));
+                if (reminders != null) {
+                    reminders.cancel(t);
+                }
+                return CommandResult.of(CommandResult.Kind.REMOVED, t, tasks.size());
+            }
+            case SNOOZE: {
+                Task t = p.by != null
+                        ? tasks.snoozeDeadline(p.index, p.by)
+                        : tasks.snoozeEvent(p.index, p.from, p.to);
+                persist(s -> s.appendSnoozed(p.index, t));
+                remind(t);
+                return CommandResult.of(CommandResult.Kind.SNOOZED, t, tasks.size());
+            }
+            default:
+                throw new GarfieldException("Unknown command.");
+        }
+    }
+
+    /** Whether a batch is open. */
+    public synchronized boolean isInBatch() {
+        return inBatch;
+    }
+
+    /**
+     * Stops reminders, commits an open batch, flushes pending changes and
+     * stops background work.
+     */
+    public synchronized void close() {
+        try {
+            if (reminders != null) {
+                reminders.close();
+            }
+            if (inBatch) {
+                commitBatch();
+            }
+            storage.close();
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+        }
+    }
+
+    /** Parses a range bound; a bare date means {@code time} on that day. */
+    private static LocalDateTime bound(String s, LocalTime time) throws GarfieldException {
+        LocalDateTime dt = Dates.tryParseDateTime(s);
+        if (dt != null) {
+            return dt;
+        }
+        LocalDate d = Dates.tryParseDate(s);
+        if (d == null) {
+            throw new GarfieldException("Dates must look like yyyy-MM-dd or yyyy-MM-dd HHmm: " + s);
+        }
+        return d.atTime(time);
+    }
+
+    private static String label(String s) {
+        LocalDateTime dt = Dates.tryParseDateTime(s);
+        return dt != null ? Dates.format(dt) : Dates.format(Dates.tryParseDate(s));
+    }
+
+    private void remind(Task t) {
+        if (reminders != null) {
+            reminders.schedule(t);
+        }
+    }
+
+    private CommandResult added(Task t) {
+        persist(s -> s.appendAdded(t));
+        remind(t);
+        return CommandResult.of(CommandResult.Kind.ADDED, t, tasks.size());
+    }
+
+    /** A single journal append against {@link Storage}. */
+    private interface JournalWrite {
+        void to(Storage storage) throws IOException;
+    }
+
+    private void commitBatch() throws IOException {
+        inBatch = false;
+        batched = 0;
+        storage.save(tasks.asList());
+    }
+
+    private void persist(JournalWrite write) {
+        if (inBatch) {
+            batched++;
+            return;
+        }
+        try {
+            write.to(storage);
+            storage.compactIfNeeded(tasks.asList());
+        } catch (IOException e) {
+            System.err.println("Save failed: " + e.getMessage());
+        }
+    }
+}
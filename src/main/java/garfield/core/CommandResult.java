@@ -0,0 +1,73 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Task;
+
+import java.util.List;
+
+/**
+ * Outcome of one executed command, rendered by each front end in its own way.
+ */
+public final class CommandResult {
+
+    public enum Kind {
+        BYE, LIST, FOUND, ADDED, REMOVED, MARKED, UNMARKED, SNOOZED, SCHEDULED, BEGUN, COMMITTED, STATS
+    }
+
+    public final Kind kind;
+    /** The affected task for ADDED, REMOVED, MARKED, UNMARKED and SNOOZED. */
+    public final Task task;
+    /** The whole list for LIST, the matches for FIND and SCHEDULED. */
+    public final List<Task> tasks;
+    /** The requested page for LIST, or {@code null} if none was given. */
+    public final Page page;
+    /** Number of tasks after the command. */
+    public final int count;
+    /** Number of changes saved, for COMMITTED. */
+    public final int changes;
+    /** What a SCHEDULED query asked for, e.g. "due on Dec 2 2019", or the summary for STATS. */
+    public final String label;
+
+    private CommandResult(Kind kind, Task task, List<Task> tasks, Page page, int count, int changes) {
+        this(kind, task, tasks, page, count, changes, null);
+    }
+
+    private CommandResult(Kind kind, Task task, List<Task> tasks, Page page, int count, int changes,
+            String label) {
+        this.kind = kind;
+        this.task = task;
+        this.tasks = tasks;
+        this.page = page;
+        this.count = count;
+        this.changes = changes;
+        this.label = label;
+    }
+
+    static CommandResult bye(int count) {
+        return new CommandResult(Kind.BYE, null, null, null, count, 0);
+    }
+
+    static CommandResult list(List<Task> tasks, Page page) {
+        return new CommandResult(Kind.LIST, null, tasks, page, tasks.size(), 0);
+    }
+
+    static CommandResult found(List<Task> matches, int count) {
+        return new CommandResult(Kind.FOUND, null, matches, null, count, 0);
+    }
+
+    static CommandResult scheduled(String label, List<Task> matches, int count) {
+        return new CommandResult(Kind.SCHEDULED, null, matches, null, count, 0, label);
+    }
+
+    static CommandResult of(Kind kind, Task task, int count) {
+        return new CommandResult(kind, task, null, null, count, 0);
+    }
+
+    static CommandResult committed(int changes, int count) {
+        return new CommandResult(Kind.COMMITTED, null, null, null, count, changes);
+    }
+
+    static CommandResult stats(String summary, int count) {
+        return new CommandResult(Kind.STATS, null, null, null, count, 0, summary);
+    }
+}
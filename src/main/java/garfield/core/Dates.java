@@ -4,7 +4,22 @@ package garfield.core;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
+/**
+ * Parses and formats the dates users type after {@code /by}, {@code /from} and
+ * {@code /to}.
+ *
+ * <p>
+ * Parsing runs in three tiers so that free text never costs an exception:
+ * a structural pre-check rejects anything that cannot match any input
+ * pattern, a hand-rolled parser handles the canonical
+ * {@code yyyy-MM-dd[ HHmm| HH:mm]} shapes with in-range fields, and only the
+ * remaining odd cases go through the {@link DateTimeFormatter}s, with their
+ * results kept in a small LRU cache.
+ */
 public final class Dates {
     private static final DateTimeFormatter[] DT_INPUTS = new DateTimeFormatter[] {
             DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm"),
@@ -17,34 +32,146 @@ public final class Dates {
     private static final DateTimeFormatter D_OUT = DateTimeFormatter.ofPattern("MMM d yyyy");
     private static final DateTimeFormatter DT_OUT = DateTimeFormatter.ofPattern("MMM d yyyy, h:mm a");
 
+    /** Entries kept for strings the fast path cannot decide. */
+    static final int CACHE_SIZE = 1024;
+
+    /** Cached result for strings that are not dates at all. */
+    private static final Object NONE = new Object();
+
+    private static final Map<String, Object> SLOW_CACHE = Collections.synchronizedMap(
+            new LinkedHashMap<String, Object>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            });
+
     public static LocalDateTime tryParseDateTime(String s) {
+        Object v = parse(s);
+        return v instanceof LocalDateTime ? (LocalDateTime) v : null;
+    }
+
+    public static LocalDate tryParseDate(String s) {
+        Object v = parse(s);
+        return v instanceof LocalDate ? (LocalDate) v : null;
+    }
+
+    public static String format(LocalDate d) {
+        return d.format(D_OUT);
+    }
+
+    public static String format(LocalDateTime dt) {
+        return dt.format(DT_OUT);
+    }
+
+    /** Returns a {@link LocalDateTime}, a {@link LocalDate} or {@link #NONE}. */
+    private static Object parse(String s) {
+        if (s == null || !mayBeDate(s)) {
+            return NONE;
+        }
+        Object v = parseCanonical(s);
+        if (v != null) {
+            return v;
+        }
+        v = SLOW_CACHE.get(s);
+        if (v == null) {
+            v = parseWithFormatters(s);
+            SLOW_CACHE.put(s, v);
+        }
+        return v;
+    }
+
+    /**
+     * Every input pattern needs at least {@code yyyy-MM-dd}: ten characters,
+     * a leading digit or sign, and a dash after the year.
+     */
+    private static boolean mayBeDate(String s) {
+        if (s.length() < 10) {
+            return false;
+        }
+        char c = s.charAt(0);
+        return (isDigit(c) || c == '+' || c == '-') && s.indexOf('-', 1) > 0;
+    }
+
+    /**
+     * Parses the exact shapes {@code yyyy-MM-dd}, {@code yyyy-MM-dd HHmm} and
+     * {@code yyyy-MM-dd HH:mm}. Returns {@code null} for anything else,
+     * including out-of-range fields, so the formatters keep the final say on
+     * edge cases.
+     */
+    private static Object parseCanonical(String s) {
+        int n = s.length();
+        if (n != 10 && n != 15 && n != 16) {
+            return null;
+        }
+        if (s.charAt(4) != '-' || s.charAt(7) != '-') {
+            return null;
+        }
+        int year = digits(s, 0, 4);
+        int month = digits(s, 5, 7);
+        int day = digits(s, 8, 10);
+        if (year < 1 || month < 1 || month > 12 || day < 1) {
+            return null;
+        }
+        if (day > 28 && day > LocalDate.of(year, month, 1).lengthOfMonth()) {
+            return null;
+        }
+        if (n == 10) {
+            return LocalDate.of(year, month, day);
+        }
+
+        if (s.charAt(10) != ' ') {
+            return null;
+        }
+        int hour = digits(s, 11, 13);
+        int minute;
+        if (n == 15) {
+            minute = digits(s, 13, 15);
+        } else {
+            if (s.charAt(13) != ':') {
+                return null;
+            }
+            minute = digits(s, 14, 16);
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+            return null;
+        }
+        return LocalDateTime.of(year, month, day, hour, minute);
+    }
+
+    /** Value of the decimal digits in {@code s[from, to)}, or -1 if any is not a digit. */
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            v = v * 10 + (c - '0');
+        }
+        return v;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static Object parseWithFormatters(String s) {
         for (DateTimeFormatter f : DT_INPUTS) {
             try {
                 return LocalDateTime.parse(s, f);
             } catch (Exception ignore) {
             }
         }
-        return null;
-    }
-
-    public static LocalDate tryParseDate(String s) {
         for (DateTimeFormatter f : D_INPUTS) {
             try {
                 return LocalDate.parse(s, f);
             } catch (Exception ignore) {
             }
         }
-        return null;
-    }
-
-    public static String format(LocalDate d) {
-        return d.format(D_OUT);
-    }
-
-    public static String format(LocalDateTime dt) {
-        return dt.format(DT_OUT);
+        return NONE;
     }
 
     private Dates() {
     }
-}
\ No newline at end of file
+}
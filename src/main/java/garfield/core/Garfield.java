@@ -1,26 +1,38 @@
 // Credit to Tsay Yong for code inspiration.
 package garfield.core;
 
+import garfield.io.Storage;
 import garfield.ui.Ui;
 import garfield.parser.Parser;
-import garfield.io.Storage;
-import garfield.task.Task;
+import garfield.server.Server;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Locale;
 
 /**
  * Entry point and main event loop for Garfield.
  *
- * Coordinates the UI, parser, storage and the in-memory task list.
+ * Reads commands from the UI and hands them to the shared
+ * {@link CommandExecutor}, then renders each {@link CommandResult}.
  */
 public class Garfield {
+    private static final Path DATA_FILE = Paths.get("data", "garfield.jsonl");
 
-    private static void persist(Storage storage, TaskList tasks) {
-        try {
-            storage.save(tasks.asList());
-        } catch (Exception e) {
-            System.err.println("Save failed: " + e.getMessage());
-        }
+    private final Path dataFile;
+
+    public Garfield() {
+        this(DATA_FILE);
+    }
+
+    /** A Garfield that keeps its tasks in {@code dataFile}. */
+    public Garfield(Path dataFile) {
+        assert dataFile != null : "Garfield needs a data file";
+        this.dataFile = dataFile;
     }
 
     /**
@@ -29,16 +41,14 @@ public class Garfield {
      */
     public void run() {
         Ui ui = new Ui();
-        Storage storage = new Storage(Paths.get("data", "garfield.jsonl"));
-        TaskList tasks;
-        try {
-            tasks = new TaskList(storage.load());
-        } catch (Exception e) {
-            System.err.println("Load failed, starting empty: " + e.getMessage());
-            tasks = new TaskList();
-        }
+        CommandExecutor executor = CommandExecutor.open(dataFile);
 
         ui.showWelcome();
+        if (!executor.getLoadReport().isClean()) {
+            ui.showError("Some saved tasks were damaged. Last load: " + executor.getLoadReport());
+        }
+        // Scheduling reads every task, so do it after the greeting.
+        executor.setReminders(new ReminderScheduler(ui::showReminder));
         boolean isExit = false;
         while (!isExit) {
             try {
@@ -46,63 +56,162 @@ public class Garfield {
                 if (full == null) {
                     break;
                 }
-                Parser.Parsed p = Parser.parse(full);
+                CommandResult r = executor.execute(Parser.parse(full));
+                isExit = r.kind == CommandResult.Kind.BYE;
+                show(ui, r);
+            } catch (GarfieldException e) {
+                ui.showError(e.getMessage());
+            }
+        }
+        executor.close();
+    }
 
-                switch (p.type) {
-                    case BYE -> {
-                        ui.showGoodbye();
-                        isExit = true;
-                    }
-                    case LIST ->
-                        ui.showList(tasks.asList());
-                    case TODO -> {
-                        Task t = tasks.addTodo(p.desc);
-                        ui.showAdded(t, tasks.size());
-                        persist(storage, tasks);
-                    }
-                    case DEADLINE -> {
-                        Task t = tasks.addDeadline(p.desc, p.by);
-                        ui.showAdded(t, tasks.size());
-                        persist(storage, tasks);
-                    }
-                    case EVENT -> {
-                        Task t = tasks.addEvent(p.desc, p.from, p.to);
-                        ui.showAdded(t, tasks.size());
-                        persist(storage, tasks);
-                    }
-                    case MARK -> {
-                        Task t = tasks.mark(p.index);
-                        ui.showMarked(t);
-                        persist(storage, tasks);
-                    }
-                    case UNMARK -> {
-                        Task t = tasks.unmark(p.index);
-                        ui.showUnmarked(t);
-                        persist(storage, tasks);
-                    }
-                    case DELETE -> {
-                        Task removed = tasks.delete(p.index);
-                        ui.showRemoved(removed, tasks.size());
-                        persist(storage, tasks);
-                    }
-                    case FIND -> {
-                        ui.showFindResults(tasks.find(p.desc));
+    /**
+     * Applies every command in {@code script} inside one batch, so the list is
+     * saved once at the end. Blank lines and lines starting with {@code #} are
+     * skipped; failing lines are reported and do not stop the run.
+     *
+     * @param script file with one command per line
+     * @return number of failed lines
+     */
+    public int runBatch(Path script) {
+        Ui ui = new Ui();
+        CommandExecutor executor = CommandExecutor.open(dataFile);
+        int applied = 0;
+        int failed = 0;
+        try (BufferedReader in = Files.newBufferedReader(script, StandardCharsets.UTF_8)) {
+            executor.execute(Parser.parse("begin"));
+            int lineNo = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    CommandResult r = executor.execute(Parser.parse(line));
+                    applied++;
+                    if (r.kind == CommandResult.Kind.BYE) {
+                        break;
                     }
-                    default ->
-                        throw new GarfieldException("Unknown command.");
+                } catch (GarfieldException e) {
+                    failed++;
+                    ui.showError("Line " + lineNo + ": " + e.getMessage());
                 }
-            } catch (GarfieldException e) {
-                ui.showError(e.getMessage());
             }
+        } catch (IOException | GarfieldException e) {
+            ui.showError("Cannot run batch: " + e.getMessage());
+            failed++;
+        }
+        executor.close();
+        ui.showBatchSummary(applied, failed);
+        return failed;
+    }
+
+    /**
+     * Serves the task list on {@code port} of the loopback address until the
+     * process is stopped, then saves it.
+     *
+     * @param port TCP port to listen on, or 0 for any free port
+     */
+    public void serve(int port) {
+        CommandExecutor executor = CommandExecutor.open(dataFile);
+        Server server;
+        try {
+            server = new Server(executor, port);
+        } catch (IOException e) {
+            System.err.println("Cannot serve on port " + port + ": " + e.getMessage());
+            executor.close();
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            executor.close();
+        }));
+        server.start();
+        System.out.println("Garfield is serving on 127.0.0.1:" + server.getPort());
+        try {
+            server.awaitClose();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void show(Ui ui, CommandResult r) {
+        switch (r.kind) {
+            case BYE -> ui.showGoodbye();
+            case LIST -> {
+                if (r.page == null) {
+                    ui.showList(r.tasks);
+                } else {
+                    ui.showList(r.tasks, r.page);
+                }
+            }
+            case FOUND -> ui.showFindResults(r.tasks);
+            case ADDED -> ui.showAdded(r.task, r.count);
+            case REMOVED -> ui.showRemoved(r.task, r.count);
+            case MARKED -> ui.showMarked(r.task);
+            case UNMARKED -> ui.showUnmarked(r.task);
+            case SNOOZED -> ui.showSnoozed(r.task);
+            case SCHEDULED -> ui.showScheduled(r.label, r.tasks);
+            case BEGUN -> ui.showBegun();
+            case COMMITTED -> ui.showCommitted(r.changes);
+            case STATS -> ui.showStats(r.label, r.count);
+            default -> throw new AssertionError(r.kind);
+        }
+    }
+
+    /**
+     * Rewrites the snapshot at {@code file} in {@code format}, one of
+     * {@code ndjson}, {@code binary} or {@code segmented}.
+     *
+     * @return whether the conversion succeeded
+     */
+    static boolean convert(Path file, String format) {
+        Storage.Format target;
+        try {
+            target = Storage.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown format " + format + "; use ndjson, binary or segmented.");
+            return false;
+        }
+        try {
+            int count = Storage.convert(file, target);
+            System.out.println("Converted " + count + " tasks in " + file + " to " + format.toLowerCase(Locale.ROOT));
+            return true;
+        } catch (IOException e) {
+            System.err.println("Cannot convert " + file + ": " + e.getMessage());
+            return false;
         }
     }
 
     /**
      * Program entry point.
      *
-     * @param args command-line arguments (unused)
+     * @param args empty for the interactive loop, {@code batch <file>} to run
+     *             a script of commands, {@code serve [port]} to serve
+     *             commands over loopback TCP, or
+     *             {@code convert <file> <format>} to rewrite a snapshot in
+     *             another format
      */
     public static void main(String[] args) {
+        if (args.length == 3 && args[0].equals("convert")) {
+            System.exit(convert(Paths.get(args[1]), args[2]) ? 0 : 1);
+        }
+        if (args.length == 2 && args[0].equals("batch")) {
+            int failed = new Garfield().runBatch(Paths.get(args[1]));
+            System.exit(failed == 0 ? 0 : 1);
+        }
+        if (args.length >= 1 && args.length <= 2 && args[0].equals("serve")) {
+            try {
+                new Garfield().serve(args.length == 2 ? Integer.parseInt(args[1]) : Server.DEFAULT_PORT);
+            } catch (NumberFormatException e) {
+                System.err.println("Usage: serve [port]");
+                System.exit(2);
+            }
+            return;
+        }
         new Garfield().run();
     }
-}
\ No newline at end of file
+}
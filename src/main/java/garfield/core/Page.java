@@ -0,0 +1,57 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+/**
+ * A window of {@code [from, to)} over a list of {@code total} items.
+ */
+public final class Page {
+    public static final int DEFAULT_SIZE = 100;
+
+    public final int number;
+    public final int size;
+    public final int from;
+    public final int to;
+    public final int total;
+
+    private Page(int number, int size, int total) {
+        this.number = number;
+        this.size = size;
+        this.total = total;
+        this.from = (int) Math.min(total, (long) (number - 1) * size);
+        this.to = (int) Math.min(total, (long) number * size);
+    }
+
+    /**
+     * Returns page {@code number} (1-based) of {@code size} items.
+     *
+     * @throws GarfieldException if the page number or size is out of range
+     */
+    public static Page of(int total, int number, int size) throws GarfieldException {
+        if (size < 1) {
+            throw new GarfieldException("Page size must be at least 1.");
+        }
+        int pages = pageCount(total, size);
+        if (number < 1 || number > Math.max(1, pages)) {
+            throw new GarfieldException("Page " + number + " is out of range (1-" + Math.max(1, pages) + ").");
+        }
+        return new Page(number, size, total);
+    }
+
+    public int pageCount() {
+        return pageCount(total, size);
+    }
+
+    /** Whether items exist outside this page. */
+    public boolean isPartial() {
+        return from > 0 || to < total;
+    }
+
+    public String footer() {
+        return String.format("Showing %d-%d of %d (page %d of %d). Use: list <page> [--page-size <n>]",
+                from + 1, to, total, number, pageCount());
+    }
+
+    private static int pageCount(int total, int size) {
+        return (int) ((total + (long) size - 1) / size);
+    }
+}
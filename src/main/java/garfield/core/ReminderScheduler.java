@@ -0,0 +1,219 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Task;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fires a reminder when a deadline falls due or an event starts.
+ *
+ * <p>
+ * Upcoming instants sit in a priority queue served by one daemon thread that
+ * sleeps until the earliest of them, so a wake-up costs O(log n) however long
+ * the list is. Re-keying after a snooze, and cancelling after a delete or
+ * mark, only flag the old queue entry; flagged entries are skipped when they
+ * reach the head. Dates without a time follow {@link TimeIndex}: a deadline
+ * fires at the end of that day and an event at the start of it. Instants
+ * already past when scheduled never fire.
+ */
+public class ReminderScheduler {
+
+    /** Receives reminders on the scheduler thread. */
+    @FunctionalInterface
+    public interface Listener {
+        void remind(Task task);
+    }
+
+    private static final class Entry implements Comparable<Entry> {
+        final long at;
+        final Task task;
+        boolean isCancelled;
+
+        Entry(long at, Task task) {
+            this.at = at;
+            this.task = task;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            return Long.compare(at, o.at);
+        }
+    }
+
+    private final Listener listener;
+    private final Clock clock;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<Task, Entry> entryOf = new IdentityHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Thread timer;
+    private boolean isClosed;
+
+    public ReminderScheduler(Listener listener) {
+        this(listener, Clock.systemDefaultZone());
+    }
+
+    public ReminderScheduler(Listener listener, Clock clock) {
+        assert listener != null && clock != null : "ReminderScheduler needs a listener and a clock";
+        this.listener = listener;
+        this.clock = clock;
+        this.timer = new Thread(this::loop, "garfield-reminders");
+        timer.setDaemon(true);
+        timer.start();
+    }
+
+    /** Schedules every task in {@code tasks}. */
+    public void scheduleAll(List<Task> tasks) {
+        lock.lock();
+        try {
+            for (Task t : tasks) {
+                scheduleLocked(t);
+            }
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Schedules {@code t}, replacing any earlier reminder for it. Tasks that
+     * are done, have no parsed date or lie in the past are just cancelled.
+     */
+    public void schedule(Task t) {
+        lock.lock();
+        try {
+            scheduleLocked(t);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancel(Task t) {
+        lock.lock();
+        try {
+            Entry old = entryOf.remove(t);
+            if (old != null) {
+                old.isCancelled = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Number of reminders still to fire. */
+    public int size() {
+        lock.lock();
+        try {
+            return entryOf.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes the timer read the clock now rather than when its current wait
+     * ends; call it after the clock jumps, such as when the system time is
+     * changed.
+     */
+    public void wake() {
+        lock.lock();
+        try {
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the timer thread and waits for a reminder in progress to finish,
+     * so none fires once this returns; pending reminders are dropped.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            isClosed = true;
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        if (Thread.currentThread() != timer) {
+            try {
+                timer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void scheduleLocked(Task t) {
+        Entry old = entryOf.remove(t);
+        if (old != null) {
+            old.isCancelled = true;
+        }
+        long at = dueMillis(t);
+        if (t.isDone() || at == Long.MIN_VALUE || at <= clock.millis()) {
+            return;
+        }
+        Entry entry = new Entry(at, t);
+        queue.add(entry);
+        entryOf.put(t, entry);
+        if (queue.size() > 2 * entryOf.size() + 64) {
+            queue.removeIf(e -> e.isCancelled);
+        }
+    }
+
+    private long dueMillis(Task t) {
+        LocalDateTime dt = TimeIndex.whenOf(t);
+        return dt == null ? Long.MIN_VALUE : dt.atZone(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    private void loop() {
+        while (true) {
+            Entry due;
+            lock.lock();
+            try {
+                while (true) {
+                    if (isClosed) {
+                        return;
+                    }
+                    Entry head = queue.peek();
+                    if (head != null && head.isCancelled) {
+                        queue.poll();
+                        continue;
+                    }
+                    if (head == null) {
+                        changed.awaitUninterruptibly();
+                        continue;
+                    }
+                    long wait = head.at - clock.millis();
+                    if (wait <= 0) {
+                        queue.poll();
+                        entryOf.remove(head.task);
+                        due = head;
+                        break;
+                    }
+                    changed.await(wait, TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+            try {
+                listener.remind(due.task);
+            } catch (RuntimeException e) {
+                System.err.println("Reminder failed: " + e.getMessage());
+            }
+        }
+    }
+}
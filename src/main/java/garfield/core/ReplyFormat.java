@@ -0,0 +1,111 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static garfield.util.Constants.LINE;
+
+import garfield.task.Task;
+
+import java.util.List;
+
+/**
+ * Renders {@link CommandResult}s as the framed text blocks shown by the GUI
+ * and sent by the server.
+ */
+public final class ReplyFormat {
+
+    /** Renders {@code r} as a reply block, the same way for every text front end. */
+    public static String format(CommandResult r) {
+        try {
+            return block(render(r));
+        } catch (GarfieldException e) {
+            return formatError(e.getMessage());
+        }
+    }
+
+    public static String formatError(String message) {
+        return block("Error: " + message);
+    }
+
+    private static String render(CommandResult r) throws GarfieldException {
+        switch (r.kind) {
+            case BYE:
+                return "Bye. Hope to see you again soon!";
+            case LIST:
+                return renderList(r.tasks, r.page != null ? r.page : Page.of(r.count, 1, Page.DEFAULT_SIZE));
+            case FOUND:
+                return renderMatches(r.tasks);
+            case ADDED:
+                return "Got it. I've added this task:\n  " + r.task
+                        + "\nNow you have " + r.count + " tasks in the list.";
+            case REMOVED:
+                return "Noted. I've removed this task:\n  " + r.task
+                        + "\nNow you have " + r.count + " tasks in the list.";
+            case MARKED:
+                return "Nice! I've marked this task as done:\n  " + r.task;
+            case UNMARKED:
+                return "OK, I've marked this task as not done yet:\n  " + r.task;
+            case SNOOZED:
+                return "Rescheduled this task:\n  " + r.task;
+            case SCHEDULED:
+                return renderScheduled(r.label, r.tasks);
+            case BEGUN:
+                return "Batch started. Changes will be saved on commit.";
+            case COMMITTED:
+                return "Batch committed: " + r.changes + " changes saved.";
+            case STATS:
+                return "You have " + r.count + " tasks in the list.\n" + r.label;
+            default:
+                throw new AssertionError(r.kind);
+        }
+    }
+
+    /**
+     * Renders one page only; a bare {@code list} shows the first page so a
+     * single bubble stays small however long the list is.
+     */
+    private static String renderList(List<Task> items, Page page) {
+        if (items.isEmpty())
+            return "(no tasks yet)";
+        StringBuilder sb = new StringBuilder("Here are the tasks in your list:");
+        for (int i = page.from; i < page.to; i++) {
+            sb.append("\n").append(i + 1).append(".").append(items.get(i));
+        }
+        if (page.isPartial()) {
+            sb.append("\n").append(page.footer());
+        }
+        return sb.toString();
+    }
+
+    private static String renderMatches(List<Task> items) {
+        if (items.isEmpty())
+            return "No matching tasks found.";
+        StringBuilder sb = new StringBuilder("Here are the matching tasks in your list:");
+        for (int i = 0; i < items.size(); i++) {
+            sb.append("\n").append(i + 1).append(".").append(items.get(i));
+        }
+        return sb.toString();
+    }
+
+    private static String renderScheduled(String label, List<Task> items) {
+        if (items.isEmpty())
+            return "No tasks " + label + ".";
+        StringBuilder sb = new StringBuilder("Here are the tasks ").append(label).append(':');
+        for (int i = 0; i < items.size(); i++) {
+            sb.append("\n").append(i + 1).append(".").append(items.get(i));
+        }
+        return sb.toString();
+    }
+
+    /** Frames {@code lines} between two rules, one indented line each. */
+    public static String block(String... lines) {
+        StringBuilder sb = new StringBuilder(LINE + "\n");
+        for (String s : lines) {
+            sb.append(' ').append(s).append('\n');
+        }
+        sb.append(LINE);
+        return sb.toString();
+    }
+
+    private ReplyFormat() {
+    }
+}
@@ -0,0 +1,135 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Incrementally maintained trigram index over lowercase task descriptions.
+ *
+ * <p>
+ * Every task gets a sequence number on insertion. Since {@link TaskList} only
+ * ever appends, sequence order equals list order, so posting lists (which are
+ * appended to in sequence order) come out already sorted. Deletions leave
+ * tombstones that are dropped when they outnumber live entries.
+ *
+ * <p>
+ * A query of three or more characters walks the shortest posting list among
+ * its trigrams and verifies each candidate with {@code contains}, which keeps
+ * plain substring semantics. Shorter queries fall back to a scan over the
+ * cached lowercase keys.
+ */
+class SearchIndex {
+
+    /** Growable list of sequence numbers, appended in increasing order. */
+    private static final class Postings {
+        private int[] seqs = new int[4];
+        private int size;
+
+        void add(int seq) {
+            if (size > 0 && seqs[size - 1] == seq) {
+                return;
+            }
+            if (size == seqs.length) {
+                seqs = Arrays.copyOf(seqs, size * 2);
+            }
+            seqs[size++] = seq;
+        }
+    }
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<Task, Integer> seqOf = new IdentityHashMap<>();
+    private final List<Task> bySeq = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+    private int tombstones;
+
+    void add(Task t) {
+        int seq = bySeq.size();
+        String key = t.getSearchKey();
+        bySeq.add(t);
+        keys.add(key);
+        seqOf.put(t, seq);
+        for (int i = 0; i + 3 <= key.length(); i++) {
+            postings.computeIfAbsent(gram(key, i), g -> new Postings()).add(seq);
+        }
+    }
+
+    void remove(Task t) {
+        Integer seq = seqOf.remove(t);
+        if (seq == null) {
+            return;
+        }
+        bySeq.set(seq, null);
+        keys.set(seq, null);
+        tombstones++;
+        if (tombstones > seqOf.size() && tombstones > 1024) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns tasks whose lowercase description contains {@code kw}, in list
+     * order.
+     *
+     * @param kw already trimmed and lowercased keyword
+     * @return matching tasks
+     */
+    List<Task> find(String kw) {
+        List<Task> out = new ArrayList<>();
+        if (kw.length() < 3) {
+            for (int seq = 0; seq < bySeq.size(); seq++) {
+                String key = keys.get(seq);
+                if (key != null && key.contains(kw)) {
+                    out.add(bySeq.get(seq));
+                }
+            }
+            return out;
+        }
+
+        Postings shortest = null;
+        for (int i = 0; i + 3 <= kw.length(); i++) {
+            Postings p = postings.get(gram(kw, i));
+            if (p == null) {
+                return out;
+            }
+            if (shortest == null || p.size < shortest.size) {
+                shortest = p;
+            }
+        }
+        for (int i = 0; i < shortest.size; i++) {
+            int seq = shortest.seqs[i];
+            String key = keys.get(seq);
+            if (key != null && key.contains(kw)) {
+                out.add(bySeq.get(seq));
+            }
+        }
+        return out;
+    }
+
+    private void rebuild() {
+        List<Task> live = new ArrayList<>(seqOf.size());
+        for (Task t : bySeq) {
+            if (t != null) {
+                live.add(t);
+            }
+        }
+        postings.clear();
+        seqOf.clear();
+        bySeq.clear();
+        keys.clear();
+        tombstones = 0;
+        for (Task t : live) {
+            add(t);
+        }
+    }
+
+    private static long gram(String s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+}
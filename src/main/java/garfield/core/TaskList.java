@@ -1,35 +1,115 @@
 // Credit to Tsay Yong for code inspiration.
 package garfield.core;
 
+import garfield.io.ChangeSource;
 import garfield.task.Task;
 import garfield.task.Todo;
 import garfield.task.Deadline;
 import garfield.task.Event;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
 
 /**
  * Mutable list of tasks with operations to add, update, delete, and search.
+ *
+ * <p>
+ * Commands still address tasks by 1-based position, but every task also has a
+ * stable id that is persisted with it and never reused. Positions resolve
+ * through a {@link TaskOrder} in O(log n) and ids through a hash map in O(1).
+ *
+ * <p>
+ * Safe to share between threads. Writers are serialized by a write lock and
+ * each one publishes a new immutable {@link TaskOrder}; {@link #asList()},
+ * {@link #size()} and {@link #getById(long)} read published state without
+ * locking. Index-backed queries use the indexes only if the read lock is free
+ * right now, and otherwise scan the published order, so no reader ever waits
+ * for a writer.
+ *
+ * <p>
+ * Every add, delete and change made through the list records the task's id
+ * for {@link #drainChangedIds()}, so an incremental save can skip the rest.
+ *
+ * <p>
+ * A {@link #compact(List)} list keeps its starting tasks in
+ * {@link ColumnarTasks} for good: it reads only their ids up front, builds a
+ * task when it is first shown, changed or looked up by id, never builds the
+ * indexes, answers queries by scanning the columns, and writes every change
+ * back to them. Tasks added later are ordinary objects.
  */
-public class TaskList {
+public class TaskList implements ChangeSource {
 
-    private final List<Task> tasks;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile TaskOrder tasks;
+    private final Map<Long, Task> byId = new ConcurrentHashMap<>();
+    private long nextId = 1;
+    private int assignedOnLoad;
+    private final SearchIndex index = new SearchIndex();
+    private final TimeIndex timeIndex = new TimeIndex();
+    private final Set<Long> changedIds = new HashSet<>();
+    /** Tasks the list started from if it is compact, or {@code null}. */
+    private final ColumnarTasks columns;
+    private final Set<Long> deletedFromBase = ConcurrentHashMap.newKeySet();
+    /** Whether the search and time indexes are kept; false for a compact list. */
+    private final boolean isIndexed;
 
     public TaskList() {
-        this.tasks = new ArrayList<>();
+        this.tasks = TaskOrder.EMPTY;
+        this.columns = null;
+        this.isIndexed = true;
     }
 
     public TaskList(List<Task> initial) {
         assert initial != null : "TaskList initial list must not be null";
+        if (initial instanceof ColumnarTasks c && c.hasAscendingIds()) {
+            this.columns = c;
+            this.isIndexed = false;
+            this.tasks = TaskOrder.over(c);
+            nextId = c.isEmpty() ? 1 : c.getId(c.size() - 1) + 1;
+            return;
+        }
+        this.columns = null;
+        this.isIndexed = true;
         for (Task t : initial) {
             assert t != null : "TaskList must not contain null tasks";
         }
-        this.tasks = new ArrayList<>(initial);
+        this.tasks = TaskOrder.of(initial);
+        for (Task t : initial) {
+            nextId = Math.max(nextId, t.getId() + 1);
+        }
+        for (Task t : initial) {
+            if (t.getId() == 0 || byId.containsKey(t.getId())) {
+                t.setId(nextId++);
+                changedIds.add(t.getId());
+                assignedOnLoad++;
+            }
+            byId.put(t.getId(), t);
+            index.add(t);
+            timeIndex.add(t);
+        }
+    }
+
+    /**
+     * A list over {@code initial} copied into {@link ColumnarTasks}, which
+     * takes a fraction of the heap of ordinary tasks. The tasks must have
+     * ascending ids, as loaded ones do; otherwise the list is an ordinary
+     * one.
+     */
+    public static TaskList compact(List<Task> initial) {
+        return new TaskList(ColumnarTasks.of(initial));
     }
 
+    /** Returns an immutable snapshot of the list as of the last completed write. */
     public List<Task> asList() {
         return tasks;
     }
@@ -38,86 +118,291 @@ public class TaskList {
         return tasks.size();
     }
 
-    private void ensureInRange(int idx) throws GarfieldException {
-        if (idx < 1 || idx > tasks.size()) {
-            throw new GarfieldException("Usage: <cmd> <task-number>");
+    /** Returns the task with {@code id}, or {@code null} if there is none. */
+    @Override
+    public Task getById(long id) {
+        Task t = byId.get(id);
+        if (t != null || columns == null || deletedFromBase.contains(id)) {
+            return t;
         }
+        int i = columns.indexOfId(id);
+        return i < 0 ? null : columns.get(i);
     }
 
-    public Task addTodo(String desc) {
-        Task t = new Todo(desc);
-        tasks.add(t);
+    @Override
+    public long[] drainChangedIds() {
+        lock.writeLock().lock();
+        try {
+            long[] ids = new long[changedIds.size()];
+            int i = 0;
+            for (long id : changedIds) {
+                ids[i++] = id;
+            }
+            changedIds.clear();
+            return ids;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Number of loaded tasks that had no id (or a duplicate one) and were given
+     * a fresh id; the caller should save so those ids stick.
+     */
+    public int getAssignedOnLoad() {
+        return assignedOnLoad;
+    }
+
+    /** Must hold the write lock. */
+    private Task append(Task t) {
+        t.setId(nextId++);
+        changedIds.add(t.getId());
+        byId.put(t.getId(), t);
+        if (isIndexed) {
+            index.add(t);
+            timeIndex.add(t);
+        }
+        tasks = tasks.append(t);
         return t;
     }
 
+    /**
+     * Must hold the write lock; records a successful change to {@code t} at
+     * {@code idx1} and writes it back to the columns.
+     */
+    private void stored(int idx1, Task t) {
+        changedIds.add(t.getId());
+        int i = columns == null ? -1 : tasks.baseIndex(idx1 - 1);
+        if (i >= 0) {
+            columns.store(i, t);
+        }
+    }
+
+    /** Must hold the write lock. */
+    private Task at(int idx1) throws GarfieldException {
+        TaskOrder current = tasks;
+        if (idx1 < 1 || idx1 > current.size()) {
+            throw new GarfieldException("That task number is out of range.");
+        }
+        return current.get(idx1 - 1);
+    }
+
+    public Task addTodo(String desc) {
+        lock.writeLock().lock();
+        try {
+            return append(new Todo(desc));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     public Task addDeadline(String desc, String by) {
-        Task t = new Deadline(desc, by);
-        tasks.add(t);
-        return t;
+        lock.writeLock().lock();
+        try {
+            return append(new Deadline(desc, by));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Task addEvent(String desc, String from, String to) {
-        Task t = new Event(desc, from, to);
-        tasks.add(t);
-        return t;
+        lock.writeLock().lock();
+        try {
+            return append(new Event(desc, from, to));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Task delete(int idx1) throws GarfieldException {
-        ensureInRange(idx1);
-        return tasks.remove(idx1 - 1);
+        lock.writeLock().lock();
+        try {
+            Task t = at(idx1);
+            tasks = tasks.without(idx1 - 1);
+            changedIds.add(t.getId());
+            if (byId.remove(t.getId()) == null && columns != null) {
+                deletedFromBase.add(t.getId());
+            }
+            if (isIndexed) {
+                index.remove(t);
+                timeIndex.remove(t);
+            }
+            return t;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Task mark(int idx1) throws GarfieldException {
-        ensureInRange(idx1);
-        Task t = tasks.get(idx1 - 1);
-        t.markAsDone();
-        return t;
+        lock.writeLock().lock();
+        try {
+            Task t = at(idx1);
+            if (!t.isDone()) {
+                t.markAsDone();
+                if (isIndexed) {
+                    timeIndex.doneChanged(t);
+                }
+                stored(idx1, t);
+            }
+            return t;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     public Task unmark(int idx1) throws GarfieldException {
-        ensureInRange(idx1);
-        Task t = tasks.get(idx1 - 1);
-        t.markAsNotDone();
-        return t;
+        lock.writeLock().lock();
+        try {
+            Task t = at(idx1);
+            if (t.isDone()) {
+                t.markAsNotDone();
+                if (isIndexed) {
+                    timeIndex.doneChanged(t);
+                }
+                stored(idx1, t);
+            }
+            return t;
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
-    public Task snoozeDeadline(int oneBasedIndex, String newBy) {
-        int i = oneBasedIndex - 1;
-        if (i < 0 || i >= tasks.size()) {
-            throw new IllegalArgumentException("That task number is out of range.");
-        }
-        Task t = tasks.get(i);
-        if (!(t instanceof Deadline)) {
-            throw new IllegalArgumentException("Snooze with /by works only for deadlines.");
+    public Task snoozeDeadline(int oneBasedIndex, String newBy) throws GarfieldException {
+        lock.writeLock().lock();
+        try {
+            Task t = at(oneBasedIndex);
+            if (!(t instanceof Deadline)) {
+                throw new GarfieldException("Snooze with /by works only for deadlines.");
+            }
+            if (isIndexed) {
+                timeIndex.remove(t);
+            }
+            ((Deadline) t).setBy(newBy);
+            if (isIndexed) {
+                timeIndex.add(t);
+            }
+            stored(oneBasedIndex, t);
+            return t;
+        } finally {
+            lock.writeLock().unlock();
         }
-        ((Deadline) t).setBy(newBy);
-        return t;
     }
 
-    public Task snoozeEvent(int oneBasedIndex, String newFrom, String newTo) {
-        int i = oneBasedIndex - 1;
-        if (i < 0 || i >= tasks.size()) {
-            throw new IllegalArgumentException("That task number is out of range.");
-        }
-        Task t = tasks.get(i);
-        if (!(t instanceof Event)) {
-            throw new IllegalArgumentException("Snooze with /from ... /to ... works only for events.");
+    public Task snoozeEvent(int oneBasedIndex, String newFrom, String newTo) throws GarfieldException {
+        lock.writeLock().lock();
+        try {
+            Task t = at(oneBasedIndex);
+            if (!(t instanceof Event)) {
+                throw new GarfieldException("Snooze with /from ... /to ... works only for events.");
+            }
+            if (isIndexed) {
+                timeIndex.remove(t);
+            }
+            ((Event) t).setSchedule(newFrom, newTo);
+            if (isIndexed) {
+                timeIndex.add(t);
+            }
+            stored(oneBasedIndex, t);
+            return t;
+        } finally {
+            lock.writeLock().unlock();
         }
-        ((Event) t).setSchedule(newFrom, newTo);
-        return t;
     }
 
     /**
      * Returns tasks whose descriptions contain the given keyword
-     * (case-insensitive).
-     * 
+     * (case-insensitive), answered from a trigram index.
+     *
      * @param keyword term to search for
      * @return matching tasks in original order
      */
     public List<Task> find(String keyword) {
         final String kw = keyword.trim().toLowerCase(Locale.ROOT);
-        return tasks.stream()
-                .filter(t -> t.toString().toLowerCase(Locale.ROOT).contains(kw))
-                .collect(Collectors.toList());
+        if (columns != null) {
+            return scanColumns(i -> columns.descriptionContains(i, kw), t -> t.getSearchKey().contains(kw));
+        }
+        if (lock.readLock().tryLock()) {
+            try {
+                return index.find(kw);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        List<Task> out = new ArrayList<>();
+        for (Task t : tasks) {
+            if (t.getSearchKey().contains(kw)) {
+                out.add(t);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Returns deadlines due on {@code day} and events starting on it, in time
+     * order.
+     */
+    public List<Task> dueOn(LocalDate day) {
+        return range(TimeIndex.startOfDay(day), TimeIndex.endOfDay(day));
+    }
+
+    /**
+     * Returns deadlines due and events starting within {@code [from, to]}, in
+     * time order.
+     */
+    public List<Task> between(LocalDateTime from, LocalDateTime to) {
+        return range(TimeIndex.epoch(from), TimeIndex.epoch(to));
+    }
+
+    /**
+     * Returns unfinished deadlines due before {@code now}, oldest first.
+     */
+    public List<Task> overdue(LocalDateTime now) {
+        long at = TimeIndex.epoch(now);
+        if (columns != null) {
+            List<Task> candidates = scanColumns(i -> columns.isDeadline(i) && !columns.isDone(i)
+                    && inRange(columns.timeKey(i), Long.MIN_VALUE, at - 1), t -> true);
+            return TimeIndex.scanOverdue(candidates, at);
+        }
+        if (lock.readLock().tryLock()) {
+            try {
+                return timeIndex.overdue(at);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return TimeIndex.scanOverdue(tasks, at);
+    }
+
+    private List<Task> range(long from, long to) {
+        if (columns != null) {
+            return TimeIndex.scanRange(scanColumns(i -> inRange(columns.timeKey(i), from, to), t -> true), from, to);
+        }
+        if (lock.readLock().tryLock()) {
+            try {
+                return timeIndex.range(from, to);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        return TimeIndex.scanRange(tasks, from, to);
+    }
+
+    /**
+     * Tasks of the published order, in order, that match {@code inColumns} if
+     * they are still only columns and {@code other} otherwise. Builds views of
+     * the matches only.
+     */
+    private List<Task> scanColumns(IntPredicate inColumns, Predicate<Task> other) {
+        List<Task> out = new ArrayList<>();
+        tasks.forEachEntry((t, i) -> {
+            if (t == null ? inColumns.test(i) : other.test(t)) {
+                out.add(t == null ? columns.get(i) : t);
+            }
+        });
+        return out;
+    }
+
+    private static boolean inRange(long key, long from, long to) {
+        return key != Long.MIN_VALUE && key >= from && key <= to;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,311 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Task;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable list order of the tasks with O(log n) positional access, append
+ * and removal.
+ *
+ * <p>
+ * The order is a persistent randomized binary search tree keyed by position:
+ * each node knows its subtree size, so position {@code i} is found by
+ * descending the tree. {@link #append} and {@link #without} copy only the
+ * O(log n) nodes on the path they change and return a new order that shares
+ * everything else, so an order handed to a reader never changes underneath
+ * it.
+ *
+ * <p>
+ * An order made by {@link #over(List)} starts out with run nodes that each
+ * stand for up to {@link #RUN} consecutive positions in a base list and ask it
+ * for a task on every access, so a columnar base list builds only the tasks
+ * that are looked at and a million base tasks cost a few thousand nodes. Removing
+ * from a run splits it.
+ */
+final class TaskOrder extends AbstractList<Task> {
+    static final TaskOrder EMPTY = new TaskOrder(null, null);
+
+    /** Base positions per run node in an order built by {@link #over(List)}. */
+    private static final int RUN = 64;
+
+    /** Receives the entries of an order: a task, or the position of one in the base list. */
+    interface EntryVisitor {
+        void visit(Task task, int baseIndex);
+    }
+
+    private static class Node {
+        /** The task, or {@code null} in a {@link Run}. */
+        final Task task;
+        final Node left;
+        final Node right;
+        final int size;
+
+        Node(Task task, int span, Node left, Node right) {
+            this.task = task;
+            this.left = left;
+            this.right = right;
+            this.size = size(left) + span + size(right);
+        }
+
+        /** Number of positions this node stands for itself. */
+        int span() {
+            return 1;
+        }
+
+        /** Copy of this node with new children. */
+        Node with(Node left, Node right) {
+            return new Node(task, 1, left, right);
+        }
+    }
+
+    /** Positions {@code baseIndex} to {@code baseIndex + span - 1} of the base list. */
+    private static final class Run extends Node {
+        final int baseIndex;
+        final int span;
+
+        Run(int baseIndex, int span, Node left, Node right) {
+            super(null, span, left, right);
+            assert span > 0 : "a run must hold at least one position";
+            this.baseIndex = baseIndex;
+            this.span = span;
+        }
+
+        @Override
+        int span() {
+            return span;
+        }
+
+        @Override
+        Node with(Node left, Node right) {
+            return new Run(baseIndex, span, left, right);
+        }
+    }
+
+    private final Node root;
+    private final List<Task> base;
+
+    private TaskOrder(Node root, List<Task> base) {
+        this.root = root;
+        this.base = base;
+    }
+
+    /** Builds a balanced order of {@code tasks} in O(n). */
+    static TaskOrder of(Collection<? extends Task> tasks) {
+        Task[] all = tasks.toArray(new Task[0]);
+        return new TaskOrder(build(all, 0, all.length), null);
+    }
+
+    /**
+     * Builds a balanced order of the tasks in {@code base} in O(n / RUN)
+     * without reading any of them. {@code base} must not change afterwards.
+     */
+    static TaskOrder over(List<Task> base) {
+        int n = base.size();
+        return new TaskOrder(buildRuns(n, 0, (n + RUN - 1) / RUN), base);
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    @Override
+    public Task get(int index) {
+        Objects.checkIndex(index, size());
+        Node n = root;
+        while (true) {
+            int ls = size(n.left);
+            if (index < ls) {
+                n = n.left;
+            } else if (index - ls >= n.span()) {
+                index -= ls + n.span();
+                n = n.right;
+            } else {
+                return task(n, index - ls);
+            }
+        }
+    }
+
+    /**
+     * Position in the base list of the task at 0-based {@code index}, or
+     * {@code -1} if it was added since.
+     */
+    int baseIndex(int index) {
+        Objects.checkIndex(index, size());
+        Node n = root;
+        while (true) {
+            int ls = size(n.left);
+            if (index < ls) {
+                n = n.left;
+            } else if (index - ls >= n.span()) {
+                index -= ls + n.span();
+                n = n.right;
+            } else {
+                return n instanceof Run r ? r.baseIndex + index - ls : -1;
+            }
+        }
+    }
+
+    /**
+     * Visits every entry in order without asking the base list for any task:
+     * base tasks come as {@code (null, position)}, others as
+     * {@code (task, -1)}.
+     */
+    void forEachEntry(EntryVisitor v) {
+        Deque<Node> stack = new ArrayDeque<>();
+        for (Node n = root; n != null || !stack.isEmpty(); ) {
+            if (n != null) {
+                stack.push(n);
+                n = n.left;
+            } else {
+                n = stack.pop();
+                if (n instanceof Run r) {
+                    for (int i = r.baseIndex; i < r.baseIndex + r.span; i++) {
+                        v.visit(null, i);
+                    }
+                } else {
+                    v.visit(n.task, -1);
+                }
+                n = n.right;
+            }
+        }
+    }
+
+    /** Returns this order with {@code t} added at the end. */
+    TaskOrder append(Task t) {
+        assert t != null : "TaskOrder must not contain null tasks";
+        return new TaskOrder(append(root, t), base);
+    }
+
+    /** Returns this order without the task at 0-based {@code index}. */
+    TaskOrder without(int index) {
+        Objects.checkIndex(index, size());
+        return new TaskOrder(without(root, index), base);
+    }
+
+    /** In-order walk with an explicit stack: a full pass is O(n). */
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node> stack = new ArrayDeque<>();
+            private Node current;
+            private int offset;
+
+            {
+                pushLeft(root);
+            }
+
+            private void pushLeft(Node n) {
+                for (; n != null; n = n.left) {
+                    stack.push(n);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return current != null || !stack.isEmpty();
+            }
+
+            @Override
+            public Task next() {
+                if (current == null) {
+                    if (stack.isEmpty()) {
+                        throw new NoSuchElementException();
+                    }
+                    current = stack.pop();
+                    offset = 0;
+                }
+                Node n = current;
+                Task t = task(n, offset++);
+                if (offset == n.span()) {
+                    current = null;
+                    pushLeft(n.right);
+                }
+                return t;
+            }
+        };
+    }
+
+    /** The task at {@code offset} within node {@code n}. */
+    private Task task(Node n, int offset) {
+        return n instanceof Run r ? base.get(r.baseIndex + offset) : n.task;
+    }
+
+    private static int size(Node n) {
+        return n == null ? 0 : n.size;
+    }
+
+    private static Node build(Task[] all, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        return new Node(all[mid], 1, build(all, from, mid), build(all, mid + 1, to));
+    }
+
+    /** Builds run nodes {@code from} to {@code to - 1} over the first {@code n} base positions. */
+    private static Node buildRuns(int n, int from, int to) {
+        if (from >= to) {
+            return null;
+        }
+        int mid = (from + to) >>> 1;
+        int start = mid * RUN;
+        return new Run(start, Math.min(RUN, n - start), buildRuns(n, from, mid), buildRuns(n, mid + 1, to));
+    }
+
+    /** The new task becomes the root of a subtree of size s with probability 1/(s+1). */
+    private static Node append(Node n, Task t) {
+        if (n == null || ThreadLocalRandom.current().nextInt(n.size + 1) == 0) {
+            return new Node(t, 1, n, null);
+        }
+        return n.with(n.left, append(n.right, t));
+    }
+
+    private static Node without(Node n, int index) {
+        int ls = size(n.left);
+        if (index < ls) {
+            return n.with(without(n.left, index), n.right);
+        }
+        int span = n.span();
+        if (index - ls >= span) {
+            return n.with(n.left, without(n.right, index - ls - span));
+        }
+        if (span == 1) {
+            return merge(n.left, n.right);
+        }
+        // Removing from a run keeps the positions before and after it as runs.
+        Run r = (Run) n;
+        int at = index - ls;
+        if (at == 0) {
+            return new Run(r.baseIndex + 1, span - 1, n.left, n.right);
+        }
+        if (at == span - 1) {
+            return new Run(r.baseIndex, span - 1, n.left, n.right);
+        }
+        return new Run(r.baseIndex, at, n.left, new Run(r.baseIndex + at + 1, span - at - 1, null, n.right));
+    }
+
+    /** Joins two orders, picking each root with probability proportional to its size. */
+    private static Node merge(Node a, Node b) {
+        if (a == null) {
+            return b;
+        }
+        if (b == null) {
+            return a;
+        }
+        if (ThreadLocalRandom.current().nextInt(a.size + b.size) < a.size) {
+            return a.with(a.left, merge(a.right, b));
+        }
+        return b.with(merge(a, b.left), b.right);
+    }
+}
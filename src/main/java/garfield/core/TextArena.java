@@ -0,0 +1,139 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Append-only store of UTF-8 strings in one byte array, addressed by int
+ * handles, so a million strings cost a million lengths and their bytes
+ * instead of a million {@code String} objects.
+ *
+ * <p>
+ * Each entry is a varint length followed by the bytes. Strings added with
+ * {@link #addPooled(String)} share one entry per distinct value; that suits
+ * schedule texts, which repeat a lot, but not descriptions, which rarely do.
+ *
+ * <p>
+ * One writer at a time. Bytes behind a handle never change and growing the
+ * array copies them, so a reader that got a handle from the writer can read
+ * it without locking.
+ */
+final class TextArena {
+    private volatile byte[] bytes = new byte[1 << 12];
+    private int used;
+    private final Map<String, Integer> pool = new HashMap<>();
+
+    int add(String s) {
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        byte[] b = bytes;
+        if (used + utf8.length + 5 > b.length) {
+            long grown = Math.max((long) b.length * 2, (long) used + utf8.length + 5);
+            assert grown <= Integer.MAX_VALUE - 8 : "TextArena is full";
+            b = Arrays.copyOf(b, (int) grown);
+        }
+        int handle = used;
+        int pos = used;
+        for (int n = utf8.length; ; n >>>= 7) {
+            if (n < 0x80) {
+                b[pos++] = (byte) n;
+                break;
+            }
+            b[pos++] = (byte) (n | 0x80);
+        }
+        System.arraycopy(utf8, 0, b, pos, utf8.length);
+        used = pos + utf8.length;
+        bytes = b;
+        return handle;
+    }
+
+    int addPooled(String s) {
+        Integer handle = pool.get(s);
+        if (handle == null) {
+            handle = add(s);
+            pool.put(s, handle);
+        }
+        return handle;
+    }
+
+    String get(int handle) {
+        byte[] b = bytes;
+        int start = start(b, handle);
+        return new String(b, start, length(b, handle), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Whether the text at {@code handle}, lowercased like
+     * {@link garfield.task.Task#getSearchKey()}, contains {@code needle}.
+     * ASCII text is compared in place; anything else is decoded first.
+     *
+     * @param needle lowercase search term
+     */
+    boolean containsLowercase(int handle, String needle) {
+        byte[] b = bytes;
+        int start = start(b, handle);
+        int end = start + length(b, handle);
+        if (!isAscii(needle) || !isAscii(b, start, end)) {
+            return get(handle).toLowerCase(Locale.ROOT).contains(needle);
+        }
+        int n = needle.length();
+        outer:
+        for (int i = start; i + n <= end; i++) {
+            for (int j = 0; j < n; j++) {
+                int c = b[i + j];
+                if (c >= 'A' && c <= 'Z') {
+                    c += 'a' - 'A';
+                }
+                if (c != needle.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Bytes in use, including pooled entries and lengths. */
+    long size() {
+        return used;
+    }
+
+    private static int length(byte[] b, int handle) {
+        int n = 0;
+        for (int shift = 0, i = handle; ; shift += 7, i++) {
+            n |= (b[i] & 0x7f) << shift;
+            if (b[i] >= 0) {
+                return n;
+            }
+        }
+    }
+
+    private static int start(byte[] b, int handle) {
+        int i = handle;
+        while (b[i] < 0) {
+            i++;
+        }
+        return i + 1;
+    }
+
+    private static boolean isAscii(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAscii(byte[] b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,189 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import garfield.task.Deadline;
+import garfield.task.Event;
+import garfield.task.Task;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sorted secondary index of deadlines and events by when they happen.
+ *
+ * <p>
+ * A deadline is keyed by its due time and an event by its start, both in
+ * epoch seconds (UTC, like the binary snapshot). A date without a time counts
+ * as the end of that day for deadlines and the start of it for events. Tasks
+ * whose dates are free text are not indexed. Ties are broken by insertion
+ * order, so a range query is a single {@link TreeSet#subSet} walk:
+ * O(log n + k).
+ *
+ * <p>
+ * Unfinished deadlines are also kept in a set of their own, so
+ * {@link #overdue} walks only those and is O(log n + k) as well. A change to
+ * a task's done flag must be reported with {@link #doneChanged}.
+ */
+class TimeIndex {
+
+    /** One indexed task; {@code seq} makes entries with equal times distinct. */
+    private static final class Entry {
+        final long at;
+        final long seq;
+        final Task task;
+
+        Entry(long at, long seq, Task task) {
+            this.at = at;
+            this.seq = seq;
+            this.task = task;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER =
+            Comparator.<Entry>comparingLong(e -> e.at).thenComparingLong(e -> e.seq);
+
+    private final TreeSet<Entry> byTime = new TreeSet<>(ORDER);
+    /** Entries of {@link #byTime} that are deadlines not yet done. */
+    private final TreeSet<Entry> pending = new TreeSet<>(ORDER);
+    private final Map<Task, Entry> entryOf = new IdentityHashMap<>();
+    private long nextSeq;
+
+    void add(Task t) {
+        long at = keyOf(t);
+        if (at == Long.MIN_VALUE) {
+            return;
+        }
+        Entry entry = new Entry(at, nextSeq++, t);
+        byTime.add(entry);
+        entryOf.put(t, entry);
+        if (t instanceof Deadline && !t.isDone()) {
+            pending.add(entry);
+        }
+    }
+
+    void remove(Task t) {
+        Entry entry = entryOf.remove(t);
+        if (entry != null) {
+            byTime.remove(entry);
+            pending.remove(entry);
+        }
+    }
+
+    /** Moves {@code t} into or out of the overdue candidates after it was marked or unmarked. */
+    void doneChanged(Task t) {
+        Entry entry = entryOf.get(t);
+        if (entry == null || !(t instanceof Deadline)) {
+            return;
+        }
+        if (t.isDone()) {
+            pending.remove(entry);
+        } else {
+            pending.add(entry);
+        }
+    }
+
+    /** Tasks keyed within {@code [from, to]} (epoch seconds), in time order. */
+    List<Task> range(long from, long to) {
+        List<Task> out = new ArrayList<>();
+        if (from > to) {
+            return out;
+        }
+        for (Entry e : byTime.subSet(new Entry(from, Long.MIN_VALUE, null), true,
+                new Entry(to, Long.MAX_VALUE, null), true)) {
+            out.add(e.task);
+        }
+        return out;
+    }
+
+    /** Unfinished deadlines due strictly before {@code now}, in time order. */
+    List<Task> overdue(long now) {
+        List<Task> out = new ArrayList<>();
+        for (Entry e : pending.headSet(new Entry(now, Long.MIN_VALUE, null), false)) {
+            out.add(e.task);
+        }
+        return out;
+    }
+
+    /**
+     * Same as {@link #range} but computed by scanning {@code tasks}, for
+     * readers that cannot use the index right now.
+     */
+    static List<Task> scanRange(List<Task> tasks, long from, long to) {
+        List<Entry> hits = new ArrayList<>();
+        long seq = 0;
+        for (Task t : tasks) {
+            long at = keyOf(t);
+            if (at != Long.MIN_VALUE && at >= from && at <= to) {
+                hits.add(new Entry(at, seq++, t));
+            }
+        }
+        return sorted(hits);
+    }
+
+    /** Same as {@link #overdue} but computed by scanning {@code tasks}. */
+    static List<Task> scanOverdue(List<Task> tasks, long now) {
+        List<Entry> hits = new ArrayList<>();
+        long seq = 0;
+        for (Task t : tasks) {
+            long at = keyOf(t);
+            if (t instanceof Deadline && !t.isDone() && at != Long.MIN_VALUE && at < now) {
+                hits.add(new Entry(at, seq++, t));
+            }
+        }
+        return sorted(hits);
+    }
+
+    private static List<Task> sorted(List<Entry> hits) {
+        hits.sort(ORDER);
+        List<Task> out = new ArrayList<>(hits.size());
+        for (Entry e : hits) {
+            out.add(e.task);
+        }
+        return out;
+    }
+
+    /** Index key of {@code t}, or {@link Long#MIN_VALUE} if it has no parsed date. */
+    static long keyOf(Task t) {
+        LocalDateTime when = whenOf(t);
+        return when == null ? Long.MIN_VALUE : epoch(when);
+    }
+
+    /**
+     * When {@code t} falls due (a deadline) or starts (an event), or null if
+     * its date is free text. A date without a time counts as the end of that
+     * day for deadlines and the start of it for events.
+     */
+    static LocalDateTime whenOf(Task t) {
+        if (t instanceof Deadline d) {
+            LocalDateTime dt = d.getDateTime();
+            LocalDate date = d.getDate();
+            return dt != null ? dt : date != null ? date.atTime(LocalTime.MAX) : null;
+        }
+        if (t instanceof Event e) {
+            LocalDateTime dt = e.getFromDateTime();
+            LocalDate date = e.getFromDate();
+            return dt != null ? dt : date != null ? date.atStartOfDay() : null;
+        }
+        return null;
+    }
+
+    static long epoch(LocalDateTime dt) {
+        return dt.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    static long startOfDay(LocalDate d) {
+        return epoch(d.atStartOfDay());
+    }
+
+    static long endOfDay(LocalDate d) {
+        return epoch(d.atTime(LocalTime.MAX));
+    }
+}
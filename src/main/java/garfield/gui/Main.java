@@ -2,14 +2,20 @@
 package garfield.gui;
 
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
-import javafx.scene.control.ScrollPane;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
@@ -18,21 +24,78 @@ import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.Region;
-import javafx.scene.layout.VBox;
 import javafx.scene.control.Tooltip;
 import javafx.stage.Stage;
 
+import garfield.core.ReplyFormat;
+
 /**
  * A GUI for Garfield with asymmetric chat bubbles and error highlighting.
- * It uses Engine.reply(...) to generate responses and strips CLI ASCII boxes
- * before showing the reply in the GUI.
+ * It uses Engine.replyAsync(...) to generate responses and strips CLI ASCII
+ * boxes before showing the reply in the GUI.
+ *
+ * <p>
+ * The transcript is a virtualized {@link ListView}: only visible bubbles exist
+ * as nodes, and the message model keeps at most {@link #MAX_MESSAGES} entries
+ * (system property {@code garfield.transcript.max}).
  */
 public class Main extends Application {
 
+    static final int MAX_MESSAGES = Math.max(1, Integer.getInteger("garfield.transcript.max", 1000));
+
+    /** One transcript entry. */
+    private static final class Message {
+        final String text;
+        final boolean isBot;
+        final boolean isError;
+
+        Message(String text, boolean isBot, boolean isError) {
+            this.text = text;
+            this.isBot = isBot;
+            this.isError = isError;
+        }
+    }
+
+    /** Cell that reuses one user row and one bot row for whatever message it shows. */
+    private final class BubbleCell extends ListCell<Message> {
+        private final Label userLabel = bubbleLabel("", false, false);
+        private final Label botLabel = bubbleLabel("", true, false);
+        private final Node userRow = userBubble(userLabel);
+        private final Node botRow = botBubble(botLabel);
+
+        BubbleCell() {
+            setPrefWidth(0); // follow the list width instead of the widest bubble
+            getStyleClass().add("bubble-cell");
+        }
+
+        @Override
+        protected void updateItem(Message m, boolean empty) {
+            super.updateItem(m, empty);
+            setText(null);
+            if (empty || m == null) {
+                setGraphic(null);
+                return;
+            }
+            if (m.isBot) {
+                botLabel.setText(m.text);
+                botLabel.getStyleClass().remove("error-bubble");
+                if (m.isError) {
+                    botLabel.getStyleClass().add("error-bubble");
+                }
+                setAlignment(Pos.TOP_LEFT);
+                setGraphic(botRow);
+            } else {
+                userLabel.setText(m.text);
+                setAlignment(Pos.TOP_RIGHT);
+                setGraphic(userRow);
+            }
+        }
+    }
+
     private final Engine engine = new Engine();
 
-    private ScrollPane scrollPane;
-    private VBox dialogContainer;
+    private final ObservableList<Message> messages = FXCollections.observableArrayList();
+    private ListView<Message> transcript;
     private TextField input;
     private Button send;
 
@@ -47,14 +110,10 @@ public class Main extends Application {
         botImage = loadImage("/images/bot.jpg");
 
         // ==== Layout nodes ====
-        dialogContainer = new VBox(8);
-        dialogContainer.setPadding(new Insets(10));
-        dialogContainer.setFillWidth(true);
-
-        scrollPane = new ScrollPane(dialogContainer);
-        scrollPane.setFitToWidth(true);
-        scrollPane.setHbarPolicy(ScrollPane.ScrollBarPolicy.NEVER);
-        scrollPane.setVbarPolicy(ScrollPane.ScrollBarPolicy.AS_NEEDED);
+        transcript = new ListView<>(messages);
+        transcript.setCellFactory(v -> new BubbleCell());
+        transcript.setFocusTraversable(false);
+        transcript.getStyleClass().add("transcript");
 
         input = new TextField();
         input.setPromptText("Type a command…  (Enter to send)");
@@ -68,11 +127,11 @@ public class Main extends Application {
         inputBar.setPadding(new Insets(8, 10, 10, 10));
         HBox.setHgrow(input, Priority.ALWAYS);
 
-        AnchorPane root = new AnchorPane(scrollPane, inputBar);
-        AnchorPane.setTopAnchor(scrollPane, 0.0);
-        AnchorPane.setRightAnchor(scrollPane, 0.0);
-        AnchorPane.setLeftAnchor(scrollPane, 0.0);
-        AnchorPane.setBottomAnchor(scrollPane, 52.0); // leaves space for input bar
+        AnchorPane root = new AnchorPane(transcript, inputBar);
+        AnchorPane.setTopAnchor(transcript, 0.0);
+        AnchorPane.setRightAnchor(transcript, 0.0);
+        AnchorPane.setLeftAnchor(transcript, 0.0);
+        AnchorPane.setBottomAnchor(transcript, 52.0); // leaves space for input bar
 
         AnchorPane.setLeftAnchor(inputBar, 0.0);
         AnchorPane.setRightAnchor(inputBar, 0.0);
@@ -100,25 +159,33 @@ public class Main extends Application {
                 return;
 
             // 1) show user bubble (right-aligned)
-            dialogContainer.getChildren().add(userBubble(text));
-
-            // 2) get bot reply from Engine, strip ASCII block for GUI
-            String raw = engine.reply(text);
-            String reply = stripBlock(raw);
-            boolean isError = raw.contains("Error:") || reply.startsWith("OOPS!!!");
-
-            // 3) show bot bubble (left-aligned); red if error
-            dialogContainer.getChildren().add(botBubble(reply, isError));
+            addMessage(new Message(text, false, false));
 
             input.clear();
 
-            // 4) disable input on exit
-            if (engine.isExit()) {
-                input.setDisable(true);
-                send.setDisable(true);
-            }
+            // 2) get bot reply from Engine off the FX thread, strip ASCII block for GUI
+            // An Error escaping the worker still becomes an error bubble.
+            CompletableFuture<String> answer = engine.replyAsync(text)
+                    .exceptionally(e -> ReplyFormat.formatError("Something went wrong (" + e + ")."));
+            answer.thenAccept(raw -> Platform.runLater(() -> {
+                String reply = stripBlock(raw);
+                boolean isError = raw.contains("Error:") || reply.startsWith("OOPS!!!");
+
+                // 3) show bot bubble (left-aligned); red if error
+                addMessage(new Message(reply, true, isError));
+                showBacklog(stage);
+
+                // 4) disable input on exit
+                if (engine.isExit()) {
+                    input.setDisable(true);
+                    send.setDisable(true);
+                }
+            }));
+            showBacklog(stage);
         };
 
+        engine.startReminders(raw -> Platform.runLater(() -> addMessage(new Message(stripBlock(raw), true, false))));
+
         send.setOnAction(e -> handleSend.run());
         input.setOnAction(e -> handleSend.run());
         // Ctrl+Enter also sends
@@ -127,20 +194,37 @@ public class Main extends Application {
                 handleSend.run();
             }
         });
+    }
 
-        // Always scroll to bottom as content grows
-        dialogContainer.heightProperty().addListener((obs, oldH, newH) -> scrollPane.setVvalue(1.0));
+    @Override
+    public void stop() {
+        engine.shutdown();
     }
 
     // ===== Helpers =====
 
+    /** Shows queued commands and the last reply latency in the title while the engine lags. */
+    private void showBacklog(Stage stage) {
+        int pending = engine.getPendingCount();
+        stage.setTitle(pending == 0 ? "Garfield"
+                : String.format("Garfield (%d queued, last reply %d ms)", pending, engine.getLastLatencyMillis()));
+    }
+
+    /** Appends to the transcript, drops the oldest entries past the cap, and scrolls to the end. */
+    private void addMessage(Message m) {
+        messages.add(m);
+        if (messages.size() > MAX_MESSAGES) {
+            messages.remove(0, messages.size() - MAX_MESSAGES);
+        }
+        transcript.scrollTo(messages.size() - 1);
+    }
+
     /** User bubble: right-aligned row, small avatar on RIGHT, distinct color. */
-    private Node userBubble(String text) {
+    private Node userBubble(Label bubble) {
         HBox row = new HBox(8);
         row.setAlignment(Pos.TOP_RIGHT);
         row.getStyleClass().add("user-row");
 
-        Node bubble = bubbleLabel(text, false, false);
         Node avatar = avatarNode(userImage);
 
         row.getChildren().addAll(bubble, avatar);
@@ -148,21 +232,20 @@ public class Main extends Application {
     }
 
     /** Bot bubble: left-aligned row, avatar on LEFT, error bubbles are red. */
-    private Node botBubble(String text, boolean isError) {
+    private Node botBubble(Label bubble) {
         HBox row = new HBox(8);
         row.setAlignment(Pos.TOP_LEFT);
         row.getStyleClass().add("bot-row");
 
         Node avatar = avatarNode(botImage);
-        Node bubble = bubbleLabel(text, true, isError);
 
         row.getChildren().addAll(avatar, bubble);
         return row;
     }
 
     /** Creates the text bubble node with the appropriate style classes. */
-    private Node bubbleLabel(String text, boolean isBot, boolean isError) {
-        javafx.scene.control.Label label = new javafx.scene.control.Label(text);
+    private Label bubbleLabel(String text, boolean isBot, boolean isError) {
+        Label label = new Label(text);
         label.setWrapText(true);
         label.setMaxWidth(300); // keep readable width in narrow windows
         label.getStyleClass().add(isBot ? "bot-bubble" : "user-bubble");
@@ -209,7 +292,7 @@ public class Main extends Application {
         return wrapper;
     }
 
-    /** Remove the ASCII box that Engine.block(...) adds for CLI friendliness. */
+    /** Remove the ASCII box that ReplyFormat.block(...) adds for CLI friendliness. */
     private static String stripBlock(String s) {
         if (s == null)
             return "";
@@ -220,7 +303,7 @@ public class Main extends Application {
             StringBuilder sb = new StringBuilder();
             for (int i = 1; i < lines.length - 1; i++) {
                 String line = lines[i];
-                // Engine puts a single leading space inside box
+                // ReplyFormat puts a single leading space inside box
                 sb.append(line.startsWith(" ") ? line.substring(1) : line);
                 if (i < lines.length - 2)
                     sb.append('\n');
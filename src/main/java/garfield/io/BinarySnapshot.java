@@ -0,0 +1,314 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import garfield.task.Deadline;
+import garfield.task.Event;
+import garfield.task.Task;
+import garfield.task.Todo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact, versioned binary snapshot format.
+ *
+ * <p>
+ * Layout (big-endian):
+ *
+ * <pre>
+ * magic "GFSN" | version u8 | generation i64 | count i32 | frame*
+ * frame  = varint body length | body | crc32c i32 of body
+ * body   = tag u8 | id varint | desc str | [by str when | from str when | to str when]
+ * str    = varint byte length | UTF-8 bytes
+ * when   = i64 epoch day or epoch second (UTC), present only if parsed
+ * </pre>
+ *
+ * <p>
+ * The tag packs the task type (bits 0-1), the done flag (bit 2) and the kind
+ * of each parsed date (bits 3-4 and 5-6: none, date, or date-time), so loading
+ * never has to run the date parsers again.
+ *
+ * <p>
+ * A frame whose checksum fails is left as a {@code null} in the list read, so
+ * the records after it keep their positions, and is counted in
+ * {@code LoadReport.Counts.checksumFailures}. Only a frame whose length runs
+ * past the end of the file loses the records after it.
+ *
+ * <p>
+ * Older versions still load: version 2 files have bare bodies without frames,
+ * and version 1 files, written before tasks had ids, also lack the id field;
+ * their tasks get ids from {@code TaskList}.
+ */
+final class BinarySnapshot {
+    static final int VERSION = 3;
+
+    private static final byte[] MAGIC = { 'G', 'F', 'S', 'N' };
+
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int DONE_BIT = 1 << 2;
+    private static final int WHEN_NONE = 0;
+    private static final int WHEN_DATE = 1;
+    private static final int WHEN_DATE_TIME = 2;
+
+    static boolean isBinary(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) < MAGIC.length) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] head = in.readNBytes(MAGIC.length);
+            for (int i = 0; i < MAGIC.length; i++) {
+                if (head[i] != MAGIC[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    static long readGeneration(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            in.skipNBytes(MAGIC.length);
+            checkVersion(in.readUnsignedByte());
+            return in.readLong();
+        }
+    }
+
+    /** Writes a snapshot to {@code out}, flushing but not closing it. */
+    static void write(List<Task> tasks, long gen, OutputStream out) throws IOException {
+        DataOutputStream o = new DataOutputStream(out);
+        o.write(MAGIC);
+        o.writeByte(VERSION);
+        o.writeLong(gen);
+        o.writeInt(tasks.size());
+        ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+        DataOutputStream b = new DataOutputStream(body);
+        CRC32C crc = new CRC32C();
+        for (Task t : tasks) {
+            body.reset();
+            writeTask(b, t);
+            crc.reset();
+            crc.update(body.toByteArray(), 0, body.size());
+            writeVarLong(o, body.size());
+            body.writeTo(o);
+            o.writeInt((int) crc.getValue());
+        }
+        o.flush();
+    }
+
+    /**
+     * Reads a snapshot, leaving a {@code null} in place of each framed record
+     * that fails its checksum or cannot be decoded.
+     */
+    static List<Task> read(Path file, LoadReport.Counts counts) throws IOException {
+        long size = Files.size(file);
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            in.skipNBytes(MAGIC.length);
+            int version = in.readUnsignedByte();
+            checkVersion(version);
+            in.readLong();
+            int count = in.readInt();
+            List<Task> tasks = new ArrayList<>(Math.max(0, count));
+            byte[] scratch = new byte[256];
+            byte[] body = new byte[256];
+            CRC32C crc = new CRC32C();
+            for (int i = 0; i < count; i++) {
+                try {
+                    if (version < 3) {
+                        tasks.add(readTask(in, version, scratch));
+                        counts.records++;
+                        continue;
+                    }
+                    long length = readVarLong(in);
+                    if (length > size) {
+                        throw new IOException("Record runs past the end of the file");
+                    }
+                    if (length > body.length) {
+                        body = new byte[(int) length];
+                    }
+                    in.readFully(body, 0, (int) length);
+                    int expected = in.readInt();
+                    crc.reset();
+                    crc.update(body, 0, (int) length);
+                    if ((int) crc.getValue() != expected) {
+                        counts.checksumFailures++;
+                        tasks.add(null);
+                        continue;
+                    }
+                    try {
+                        tasks.add(readTask(new DataInputStream(new ByteArrayInputStream(body, 0, (int) length)),
+                                version, scratch));
+                        counts.records++;
+                    } catch (IOException e) {
+                        // The frame is intact but holds a record this version cannot read.
+                        counts.skipped++;
+                        tasks.add(null);
+                    }
+                } catch (IOException e) {
+                    // A truncated tail, or an unframed record that fails to decode, drops the records after it.
+                    counts.skipped += count - i;
+                    break;
+                }
+            }
+            return tasks;
+        }
+    }
+
+    private static void writeTask(DataOutputStream o, Task t) throws IOException {
+        int tag = t.isDone() ? DONE_BIT : 0;
+        if (t instanceof Deadline d) {
+            tag |= TYPE_DEADLINE | kind(d.getDateTime(), d.getDate()) << 3;
+            o.writeByte(tag);
+            writeVarLong(o, t.getId());
+            writeString(o, t.getDescription());
+            writeString(o, d.getBy());
+            writeWhen(o, d.getDateTime(), d.getDate());
+        } else if (t instanceof Event e) {
+            tag |= TYPE_EVENT
+                    | kind(e.getFromDateTime(), e.getFromDate()) << 3
+                    | kind(e.getToDateTime(), e.getToDate()) << 5;
+            o.writeByte(tag);
+            writeVarLong(o, t.getId());
+            writeString(o, t.getDescription());
+            writeString(o, e.getFrom());
+            writeWhen(o, e.getFromDateTime(), e.getFromDate());
+            writeString(o, e.getTo());
+            writeWhen(o, e.getToDateTime(), e.getToDate());
+        } else {
+            o.writeByte(tag | TYPE_TODO);
+            writeVarLong(o, t.getId());
+            writeString(o, t.getDescription());
+        }
+    }
+
+    private static Task readTask(DataInputStream in, int version, byte[] scratch) throws IOException {
+        int tag = in.readUnsignedByte();
+        long id = version >= 2 ? readVarLong(in) : 0;
+        String desc = readString(in, scratch);
+        Task t;
+        switch (tag & 0x3) {
+            case TYPE_TODO:
+                t = new Todo(desc);
+                break;
+            case TYPE_DEADLINE: {
+                String by = readString(in, scratch);
+                int kind = (tag >> 3) & 0x3;
+                long when = kind == WHEN_NONE ? 0 : in.readLong();
+                t = new Deadline(desc, by, dateTime(kind, when), date(kind, when));
+                break;
+            }
+            case TYPE_EVENT: {
+                String from = readString(in, scratch);
+                int fromKind = (tag >> 3) & 0x3;
+                long fromWhen = fromKind == WHEN_NONE ? 0 : in.readLong();
+                String to = readString(in, scratch);
+                int toKind = (tag >> 5) & 0x3;
+                long toWhen = toKind == WHEN_NONE ? 0 : in.readLong();
+                t = new Event(desc, from, to,
+                        dateTime(fromKind, fromWhen), date(fromKind, fromWhen),
+                        dateTime(toKind, toWhen), date(toKind, toWhen));
+                break;
+            }
+            default:
+                throw new IOException("Unknown task tag: " + tag);
+        }
+        if ((tag & DONE_BIT) != 0) {
+            t.markAsDone();
+        }
+        if (id > 0) {
+            t.setId(id);
+        }
+        return t;
+    }
+
+    private static int kind(LocalDateTime dt, LocalDate d) {
+        return dt != null ? WHEN_DATE_TIME : d != null ? WHEN_DATE : WHEN_NONE;
+    }
+
+    private static void writeWhen(DataOutputStream o, LocalDateTime dt, LocalDate d) throws IOException {
+        if (dt != null) {
+            o.writeLong(dt.toEpochSecond(ZoneOffset.UTC));
+        } else if (d != null) {
+            o.writeLong(d.toEpochDay());
+        }
+    }
+
+    private static LocalDateTime dateTime(int kind, long when) {
+        return kind == WHEN_DATE_TIME ? LocalDateTime.ofEpochSecond(when, 0, ZoneOffset.UTC) : null;
+    }
+
+    private static LocalDate date(int kind, long when) {
+        return kind == WHEN_DATE ? LocalDate.ofEpochDay(when) : null;
+    }
+
+    private static void writeString(DataOutputStream o, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(o, b.length);
+        o.write(b);
+    }
+
+    private static void writeVarLong(DataOutputStream o, long n) throws IOException {
+        while ((n & ~0x7fL) != 0) {
+            o.writeByte((int) (n & 0x7f) | 0x80);
+            n >>>= 7;
+        }
+        o.writeByte((int) n);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long n = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readUnsignedByte();
+            n |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return n;
+            }
+            if (shift > 56) {
+                throw new IOException("Malformed varint");
+            }
+        }
+    }
+
+    private static String readString(DataInputStream in, byte[] scratch) throws IOException {
+        int n = 0;
+        for (int shift = 0;; shift += 7) {
+            int b = in.readUnsignedByte();
+            n |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            if (shift > 28) {
+                throw new IOException("Malformed string length");
+            }
+        }
+        byte[] buf = n <= scratch.length ? scratch : new byte[n];
+        in.readFully(buf, 0, n);
+        return new String(buf, 0, n, StandardCharsets.UTF_8);
+    }
+
+    private static void checkVersion(int version) throws IOException {
+        if (version < 1 || version > VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+    }
+
+    private BinarySnapshot() {
+    }
+}
@@ -0,0 +1,17 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import garfield.task.Task;
+
+/**
+ * Tells an incremental save which tasks changed, so it does not have to look
+ * at every task; see {@link Storage#trackChanges(ChangeSource)}.
+ */
+public interface ChangeSource {
+
+    /** Ids of tasks added, changed or deleted since the last call. */
+    long[] drainChangedIds();
+
+    /** The task with {@code id}, or {@code null} if it was deleted. */
+    Task getById(long id);
+}
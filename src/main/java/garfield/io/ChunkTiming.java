@@ -0,0 +1,27 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+/**
+ * Timing of one chunk decoded by a parallel {@link Storage#load()}.
+ */
+public final class ChunkTiming {
+    public final int chunk;
+    public final long offset;
+    public final long bytes;
+    public final int records;
+    public final long nanos;
+
+    ChunkTiming(int chunk, long offset, long bytes, int records, long nanos) {
+        this.chunk = chunk;
+        this.offset = offset;
+        this.bytes = bytes;
+        this.records = records;
+        this.nanos = nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("chunk %d @%d: %d bytes, %d records, %.2f ms",
+                chunk, offset, bytes, records, nanos / 1e6);
+    }
+}
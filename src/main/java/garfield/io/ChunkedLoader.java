@@ -0,0 +1,137 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import garfield.task.Task;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Decodes a large snapshot file in parallel.
+ *
+ * <p>
+ * The file is split into newline-aligned chunks which are decoded
+ * independently on a fork-join pool. Each chunk is read through one reused
+ * line buffer, so decoding holds only a buffer per chunk in flight rather
+ * than the chunk itself. Chunk results are concatenated in file order, so
+ * task numbering is identical to a sequential load.
+ */
+final class ChunkedLoader {
+
+    private static final int CHUNKS_PER_THREAD = 4;
+    private static final long MIN_CHUNK_BYTES = 1L << 20;
+
+    private final long minChunkBytes;
+    private final List<ChunkTiming> timings = new ArrayList<>();
+
+    ChunkedLoader() {
+        this(MIN_CHUNK_BYTES);
+    }
+
+    /** A loader that makes chunks of at least {@code minChunkBytes}; small values suit tests. */
+    ChunkedLoader(long minChunkBytes) {
+        assert minChunkBytes > 0 : "Chunks must not be empty";
+        this.minChunkBytes = minChunkBytes;
+    }
+
+    /**
+     * Loads every snapshot record of {@code file}.
+     *
+     * @param file snapshot file to read
+     * @param pool pool to decode chunks on
+     * @param counts receives what was read and dropped
+     * @return tasks in file order
+     * @throws IOException if the file cannot be mapped
+     */
+    List<Task> load(Path file, ForkJoinPool pool, LoadReport.Counts counts) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            int wanted = (int) Math.max(1, Math.min(
+                    (long) pool.getParallelism() * CHUNKS_PER_THREAD, size / minChunkBytes));
+            long[] bounds = boundaries(ch, size, wanted);
+
+            List<ForkJoinTask<List<Task>>> parts = new ArrayList<>();
+            long[] nanos = new long[bounds.length - 1];
+            int[] records = new int[bounds.length - 1];
+            LoadReport.Counts[] chunkCounts = new LoadReport.Counts[bounds.length - 1];
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                final int chunk = i;
+                chunkCounts[i] = new LoadReport.Counts();
+                parts.add(pool.submit(() -> decode(ch, bounds[chunk], bounds[chunk + 1], chunk, nanos, records,
+                        chunkCounts[chunk])));
+            }
+
+            List<Task> tasks = new ArrayList<>();
+            for (int i = 0; i < parts.size(); i++) {
+                tasks.addAll(parts.get(i).join());
+                counts.add(chunkCounts[i]);
+            }
+            timings.clear();
+            for (int i = 0; i < parts.size(); i++) {
+                timings.add(new ChunkTiming(i, bounds[i], bounds[i + 1] - bounds[i], records[i], nanos[i]));
+            }
+            return tasks;
+        }
+    }
+
+    /** Per-chunk timings of the last {@link #load} call. */
+    List<ChunkTiming> timings() {
+        return timings;
+    }
+
+    private static List<Task> decode(FileChannel ch, long start, long end, int chunk,
+            long[] nanos, int[] records, LoadReport.Counts counts) throws IOException {
+        long t0 = System.nanoTime();
+        List<Task> out = new ArrayList<>();
+        Record rec = new Record();
+        LineReader.forEachLine(ch, start, end, (b, s, e) -> Storage.decode(rec, b, s, e, out, counts));
+        records[chunk] = out.size();
+        nanos[chunk] = System.nanoTime() - t0;
+        return out;
+    }
+
+    /**
+     * Picks up to {@code wanted} chunk boundaries, each moved forward to just
+     * past the next newline. Chunks are capped below 2 GiB.
+     */
+    private static long[] boundaries(FileChannel ch, long size, int wanted) throws IOException {
+        long step = Math.max(1, Math.min(size / wanted, Integer.MAX_VALUE - (1L << 20)));
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        long prev = 0;
+        while (prev < size) {
+            long next = Math.min(size, prev + step);
+            if (next < size) {
+                next = nextLineStart(ch, next, size);
+            }
+            bounds.add(next);
+            prev = next;
+        }
+        long[] out = new long[bounds.size()];
+        for (int i = 0; i < out.length; i++) {
+            out[i] = bounds.get(i);
+        }
+        return out;
+    }
+
+    private static long nextLineStart(FileChannel ch, long pos, long size) throws IOException {
+        final int window = 1 << 16;
+        while (pos < size) {
+            MappedByteBuffer map = ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(window, size - pos));
+            for (int i = 0; i < map.limit(); i++) {
+                if (map.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += map.limit();
+        }
+        return size;
+    }
+}
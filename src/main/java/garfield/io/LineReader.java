@@ -0,0 +1,128 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Splits a file into lines without creating a {@code String} per line.
+ *
+ * <p>
+ * Bytes are read into a single reused buffer and each complete line is handed
+ * to the visitor as a {@code [start, end)} range of that buffer. The range is
+ * only valid for the duration of the callback. Blank lines and {@code //}
+ * comment lines are skipped; a trailing {@code \r} is dropped.
+ */
+final class LineReader {
+
+    /** Receives one line as a range of a shared buffer. */
+    interface Visitor {
+        void visit(byte[] buf, int start, int end);
+    }
+
+    private static final int INITIAL_BUFFER = 1 << 16;
+
+    /** Where {@link #forEachLine(Source, Visitor)} reads from; like {@link InputStream#read(byte[], int, int)}. */
+    private interface Source {
+        int read(byte[] buf, int off, int len) throws IOException;
+    }
+
+    static void forEachLine(Path p, Visitor v) throws IOException {
+        try (InputStream in = Files.newInputStream(p)) {
+            forEachLine(in::read, v);
+        }
+    }
+
+    /**
+     * Visits every line in bytes {@code [start, end)} of {@code ch}. Uses
+     * positional reads, so several threads can read one channel at once.
+     */
+    static void forEachLine(FileChannel ch, long start, long end, Visitor v) throws IOException {
+        long[] pos = {start};
+        forEachLine((buf, off, len) -> {
+            if (pos[0] >= end) {
+                return -1;
+            }
+            int n = ch.read(ByteBuffer.wrap(buf, off, (int) Math.min(len, end - pos[0])), pos[0]);
+            if (n > 0) {
+                pos[0] += n;
+            }
+            return n;
+        }, v);
+    }
+
+    private static void forEachLine(Source in, Visitor v) throws IOException {
+        byte[] buf = new byte[INITIAL_BUFFER];
+        int len = 0;
+        int scanned = 0;
+        boolean isEof = false;
+        while (!isEof) {
+            if (len == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            int n = in.read(buf, len, buf.length - len);
+            if (n < 0) {
+                isEof = true;
+            } else {
+                len += n;
+            }
+
+            int start = 0;
+            for (int i = scanned; i < len; i++) {
+                if (buf[i] == '\n') {
+                    emit(buf, start, i, v);
+                    start = i + 1;
+                }
+            }
+            if (isEof && start < len) {
+                emit(buf, start, len, v);
+                start = len;
+            }
+            System.arraycopy(buf, start, buf, 0, len - start);
+            len -= start;
+            scanned = len;
+        }
+    }
+
+    /**
+     * Visits every line in {@code buf[start, end)}; the last line need not be
+     * newline-terminated.
+     */
+    static void forEachLine(byte[] buf, int start, int end, Visitor v) {
+        int lineStart = start;
+        for (int i = start; i < end; i++) {
+            if (buf[i] == '\n') {
+                emit(buf, lineStart, i, v);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < end) {
+            emit(buf, lineStart, end, v);
+        }
+    }
+
+    private static void emit(byte[] buf, int start, int end, Visitor v) {
+        while (start < end && isSpace(buf[start])) {
+            start++;
+        }
+        while (end > start && isSpace(buf[end - 1])) {
+            end--;
+        }
+        if (start == end || (end - start >= 2 && buf[start] == '/' && buf[start + 1] == '/')) {
+            return;
+        }
+        v.visit(buf, start, end);
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    private LineReader() {
+    }
+}
@@ -0,0 +1,75 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+/**
+ * What one {@link Storage#load()} read, dropped and how long it took.
+ */
+public final class LoadReport {
+    /** Report of a storage that has not loaded yet. */
+    public static final LoadReport NONE = new LoadReport(new Counts(), 0, 0, false);
+
+    /** Tasks decoded from the snapshot. */
+    public final int records;
+    /** Journal records applied on top of the snapshot. */
+    public final int journalRecords;
+    /** Records that failed to parse or to apply. */
+    public final int skipped;
+    /** Records whose CRC32C did not match. */
+    public final int checksumFailures;
+    /** Journal records dropped from the first torn or unappliable one on, that one included. */
+    public final int tornRecords;
+    /** Bytes of snapshot and journal read. */
+    public final long bytes;
+    public final long nanos;
+    /** Whether the snapshot was damaged and a backup was loaded instead. */
+    public final boolean isRestoredFromBackup;
+
+    /** Counters filled in while loading; one per chunk when loading in parallel. */
+    static final class Counts {
+        int records;
+        int journalRecords;
+        int skipped;
+        int checksumFailures;
+        int tornRecords;
+        /** Bytes read from files other than the snapshot itself, such as segments. */
+        long bytes;
+
+        void add(Counts o) {
+            records += o.records;
+            journalRecords += o.journalRecords;
+            skipped += o.skipped;
+            checksumFailures += o.checksumFailures;
+            tornRecords += o.tornRecords;
+            bytes += o.bytes;
+        }
+    }
+
+    LoadReport(Counts counts, long bytes, long nanos, boolean isRestoredFromBackup) {
+        this.records = counts.records;
+        this.journalRecords = counts.journalRecords;
+        this.skipped = counts.skipped;
+        this.checksumFailures = counts.checksumFailures;
+        this.tornRecords = counts.tornRecords;
+        this.bytes = bytes;
+        this.nanos = nanos;
+        this.isRestoredFromBackup = isRestoredFromBackup;
+    }
+
+    /** Whether everything on disk was loaded as written. */
+    public boolean isClean() {
+        return skipped == 0 && checksumFailures == 0 && tornRecords == 0 && !isRestoredFromBackup;
+    }
+
+    public double bytesPerSecond() {
+        return nanos == 0 ? 0 : bytes * 1e9 / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d records + %d journal records, %d skipped, %d checksum failures, "
+                + "%d torn%s; %.1f MB in %.0f ms (%.1f MB/s)",
+                records, journalRecords, skipped, checksumFailures, tornRecords,
+                isRestoredFromBackup ? ", restored from backup" : "",
+                bytes / 1e6, nanos / 1e6, bytesPerSecond() / 1e6);
+    }
+}
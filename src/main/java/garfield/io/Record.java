@@ -0,0 +1,322 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Reusable, single-pass reader for one flat NDJSON record as written by
+ * {@link Storage}.
+ *
+ * <p>
+ * {@link #parse(byte[], int, int)} walks the line once, matches keys byte by
+ * byte against the known field names and decodes Base64 values straight from
+ * the line into a scratch buffer, so the only objects created per record are
+ * the decoded text fields themselves. Unknown keys are skipped.
+ *
+ * <p>
+ * A record may end with a {@code "crc"} key holding the CRC32C of every byte
+ * before it, as eight hex digits; see {@link #withChecksum(String)} and
+ * {@link #checkChecksum(byte[], int, int)}.
+ */
+final class Record {
+    static final String OP_ADD = "add";
+    static final String OP_MARK = "mark";
+    static final String OP_DELETE = "delete";
+    static final String OP_SNOOZE = "snooze";
+
+    private static final byte[] K_OP = ascii("op");
+    private static final byte[] K_TYPE = ascii("type");
+    private static final byte[] K_DONE = ascii("done");
+    private static final byte[] K_IDX = ascii("idx");
+    private static final byte[] K_ID = ascii("id");
+    private static final byte[] K_DESC = ascii("desc_b64");
+    private static final byte[] K_BY = ascii("by_b64");
+    private static final byte[] K_FROM = ascii("from_b64");
+    private static final byte[] K_TO = ascii("to_b64");
+    private static final String[] OPS = { OP_ADD, OP_MARK, OP_DELETE, OP_SNOOZE };
+    private static final byte[][] OP_BYTES = { ascii(OP_ADD), ascii(OP_MARK), ascii(OP_DELETE), ascii(OP_SNOOZE) };
+
+    static final int CHECKSUM_NONE = 0;
+    static final int CHECKSUM_OK = 1;
+    static final int CHECKSUM_BAD = 2;
+
+    private static final byte[] CRC_KEY = ascii(",\"crc\":\"");
+    /** {@code ,"crc":"} + 8 hex digits + {@code "}}. */
+    private static final int CRC_SUFFIX = CRC_KEY.length + 8 + 2;
+
+    private static final int[] B64 = new int[256];
+
+    static {
+        Arrays.fill(B64, -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            B64[alphabet.charAt(i)] = i;
+        }
+    }
+
+    /** Operation name for journal records, or {@code null} for snapshot lines. */
+    String op;
+    /** Task type symbol ({@code T}, {@code D}, {@code E}) or {@code 0} if absent. */
+    char type;
+    boolean done;
+    /** 1-based index for journal records, or {@code -1} if absent. */
+    int idx;
+    /** Stable task id, or {@code 0} if absent. */
+    long id;
+    String desc;
+    String by;
+    String from;
+    String to;
+
+    private byte[] scratch = new byte[256];
+    private int pos;
+
+    /**
+     * Parses {@code buf[start, end)} into this record's fields.
+     *
+     * @return {@code false} if the line is not a well-formed flat object
+     */
+    boolean parse(byte[] buf, int start, int end) {
+        op = null;
+        type = 0;
+        done = false;
+        idx = -1;
+        id = 0;
+        desc = by = from = to = null;
+        pos = start;
+
+        skipSpace(buf, end);
+        if (pos >= end || buf[pos++] != '{') {
+            return false;
+        }
+        skipSpace(buf, end);
+        if (pos < end && buf[pos] == '}') {
+            return true;
+        }
+        while (pos < end) {
+            if (buf[pos++] != '"') {
+                return false;
+            }
+            int keyStart = pos;
+            int keyEnd = indexOf(buf, '"', end);
+            if (keyEnd < 0) {
+                return false;
+            }
+            pos = keyEnd + 1;
+            skipSpace(buf, end);
+            if (pos >= end || buf[pos++] != ':') {
+                return false;
+            }
+            skipSpace(buf, end);
+            if (pos >= end || !readValue(buf, keyStart, keyEnd, end)) {
+                return false;
+            }
+            skipSpace(buf, end);
+            if (pos >= end) {
+                return false;
+            }
+            byte sep = buf[pos++];
+            if (sep == '}') {
+                return true;
+            }
+            if (sep != ',') {
+                return false;
+            }
+            skipSpace(buf, end);
+        }
+        return false;
+    }
+
+    /**
+     * Appends a checksum key to a flat JSON object. The record must be ASCII,
+     * which every record Storage writes is.
+     */
+    static String withChecksum(String record) {
+        assert record.endsWith("}") : "record must be a JSON object";
+        byte[] bytes = record.getBytes(StandardCharsets.ISO_8859_1);
+        int bodyLength = bytes.length - 1;
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, bodyLength);
+        long value = crc.getValue();
+        StringBuilder sb = new StringBuilder(bodyLength + CRC_SUFFIX).append(record, 0, bodyLength)
+                .append(",\"crc\":\"");
+        for (int shift = 28; shift >= 0; shift -= 4) {
+            sb.append(Character.forDigit((int) (value >>> shift) & 0xf, 16));
+        }
+        return sb.append("\"}").toString();
+    }
+
+    /**
+     * Checks the checksum key that {@link #withChecksum} appends.
+     *
+     * @return {@link #CHECKSUM_NONE} if the line has none, else
+     *         {@link #CHECKSUM_OK} or {@link #CHECKSUM_BAD}
+     */
+    static int checkChecksum(byte[] buf, int start, int end) {
+        int keyAt = end - CRC_SUFFIX;
+        if (keyAt < start || buf[end - 1] != '}' || buf[end - 2] != '"'
+                || !keyIs(buf, keyAt, keyAt + CRC_KEY.length, CRC_KEY)) {
+            return CHECKSUM_NONE;
+        }
+        long expected = 0;
+        for (int i = keyAt + CRC_KEY.length; i < end - 2; i++) {
+            int digit = Character.digit(buf[i], 16);
+            if (digit < 0) {
+                return CHECKSUM_BAD;
+            }
+            expected = expected << 4 | digit;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buf, start, keyAt - start);
+        return crc.getValue() == expected ? CHECKSUM_OK : CHECKSUM_BAD;
+    }
+
+    private boolean readValue(byte[] buf, int keyStart, int keyEnd, int end) {
+        byte c = buf[pos];
+        if (c == '"') {
+            int valStart = ++pos;
+            int valEnd = indexOf(buf, '"', end);
+            if (valEnd < 0) {
+                return false;
+            }
+            pos = valEnd + 1;
+            return assignString(buf, keyStart, keyEnd, valStart, valEnd);
+        }
+        if (c == 't' || c == 'f') {
+            boolean value = c == 't';
+            pos += value ? 4 : 5;
+            if (pos > end) {
+                return false;
+            }
+            if (keyIs(buf, keyStart, keyEnd, K_DONE)) {
+                done = value;
+            }
+            return true;
+        }
+        if (c == '-' || (c >= '0' && c <= '9')) {
+            boolean isNegative = c == '-';
+            if (isNegative) {
+                pos++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+                value = value * 10 + (buf[pos++] - '0');
+                digits++;
+            }
+            if (digits == 0 || digits > 18) {
+                return false;
+            }
+            if (keyIs(buf, keyStart, keyEnd, K_IDX)) {
+                if (value > Integer.MAX_VALUE) {
+                    return false;
+                }
+                idx = (int) (isNegative ? -value : value);
+            } else if (keyIs(buf, keyStart, keyEnd, K_ID)) {
+                id = isNegative ? 0 : value;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private boolean assignString(byte[] buf, int keyStart, int keyEnd, int valStart, int valEnd) {
+        if (keyIs(buf, keyStart, keyEnd, K_DESC)) {
+            desc = decodeBase64(buf, valStart, valEnd);
+            return desc != null;
+        }
+        if (keyIs(buf, keyStart, keyEnd, K_BY)) {
+            by = decodeBase64(buf, valStart, valEnd);
+            return by != null;
+        }
+        if (keyIs(buf, keyStart, keyEnd, K_FROM)) {
+            from = decodeBase64(buf, valStart, valEnd);
+            return from != null;
+        }
+        if (keyIs(buf, keyStart, keyEnd, K_TO)) {
+            to = decodeBase64(buf, valStart, valEnd);
+            return to != null;
+        }
+        if (keyIs(buf, keyStart, keyEnd, K_TYPE)) {
+            if (valEnd - valStart != 1) {
+                return false;
+            }
+            type = (char) buf[valStart];
+            return true;
+        }
+        if (keyIs(buf, keyStart, keyEnd, K_OP)) {
+            for (int i = 0; i < OPS.length; i++) {
+                if (keyIs(buf, valStart, valEnd, OP_BYTES[i])) {
+                    op = OPS[i];
+                    return true;
+                }
+            }
+            return false;
+        }
+        return true;
+    }
+
+    /** Decodes standard padded Base64 from the line into a UTF-8 string. */
+    private String decodeBase64(byte[] buf, int start, int end) {
+        while (end > start && buf[end - 1] == '=') {
+            end--;
+        }
+        int n = end - start;
+        if (n % 4 == 1) {
+            return null;
+        }
+        int outLen = n / 4 * 3 + Math.max(0, n % 4 - 1);
+        if (scratch.length < outLen) {
+            scratch = new byte[Math.max(outLen, scratch.length * 2)];
+        }
+        int out = 0;
+        int acc = 0;
+        int bits = 0;
+        for (int i = start; i < end; i++) {
+            int v = B64[buf[i] & 0xff];
+            if (v < 0) {
+                return null;
+            }
+            acc = (acc << 6) | v;
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                scratch[out++] = (byte) (acc >> bits);
+            }
+        }
+        return new String(scratch, 0, out, StandardCharsets.UTF_8);
+    }
+
+    private void skipSpace(byte[] buf, int end) {
+        while (pos < end && (buf[pos] == ' ' || buf[pos] == '\t')) {
+            pos++;
+        }
+    }
+
+    private int indexOf(byte[] buf, char c, int end) {
+        for (int i = pos; i < end; i++) {
+            if (buf[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean keyIs(byte[] buf, int start, int end, byte[] key) {
+        if (end - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (buf[start + i] != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
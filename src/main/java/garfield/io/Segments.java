@@ -0,0 +1,370 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.io;
+
+import garfield.task.Task;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Snapshot split into segment files of {@link #SPAN} consecutive task ids, so
+ * a save rewrites only the segments whose tasks changed.
+ *
+ * <p>
+ * The snapshot file itself becomes a small manifest naming the current file
+ * of each segment and how many tasks it holds:
+ *
+ * <pre>
+ * // gen G
+ * // crc32c
+ * // segments SPAN
+ * segment fileGeneration count
+ * ...
+ * // end n crc
+ * </pre>
+ *
+ * <p>
+ * Segment files live in {@code <file>.segments/} as
+ * {@code <segment>-<generation>.jsonl} and are never overwritten. A save
+ * writes fresh files for the dirty segments, then atomically replaces the
+ * manifest, and only then deletes the files it superseded, so a crash at any
+ * point leaves a manifest that matches the journal. A segment is dirty if one
+ * of its tasks is {@link Task#isDirty()} (which covers added tasks) or if its
+ * task count changed (which covers deletes). Finding those takes one pass
+ * over the list, unless a {@link ChangeSource} names the changed ids; then a
+ * save costs only the segments it rewrites.
+ *
+ * <p>
+ * Tasks are listed in id order, which is list order for every list this
+ * program writes: new tasks always get the next id.
+ */
+final class Segments {
+    static final int SPAN = 1024;
+
+    private static final String MARKER = "// segments ";
+
+    /** Current file generation and task count of one segment. */
+    private static final class Entry {
+        final long gen;
+        final int count;
+
+        Entry(long gen, int count) {
+            this.gen = gen;
+            this.count = count;
+        }
+    }
+
+    private final Path manifest;
+    private final Path dir;
+    private TreeMap<Long, Entry> published;
+    private TreeMap<Long, Entry> pending;
+    private List<Path> superseded = new ArrayList<>();
+    private List<Task> written = new ArrayList<>();
+    private int[] writtenVersions = new int[0];
+    private long lastBytesWritten;
+    /** Whether the published segments match the tasks apart from changes a source reports. */
+    private boolean isInSync;
+
+    Segments(Path manifest) {
+        this.manifest = manifest;
+        this.dir = manifest.resolveSibling(manifest.getFileName() + ".segments");
+    }
+
+    static boolean isManifest(Path p) throws IOException {
+        if (!Files.exists(p)) {
+            return false;
+        }
+        try (InputStream in = Files.newInputStream(p)) {
+            String head = new String(in.readNBytes(96), StandardCharsets.ISO_8859_1);
+            return head.contains("\n" + MARKER);
+        }
+    }
+
+    /** Bytes of segment files and manifest written by the last {@link #write}. */
+    long getLastBytesWritten() {
+        return lastBytesWritten;
+    }
+
+    /**
+     * Reads every segment named by the manifest, on {@code pool}, and deletes
+     * files left behind by an interrupted save.
+     */
+    List<Task> read(ForkJoinPool pool, LoadReport.Counts counts) throws IOException {
+        published = readManifest();
+        List<Long> ids = new ArrayList<>(published.keySet());
+        List<ForkJoinTask<List<Task>>> parts = new ArrayList<>();
+        LoadReport.Counts[] partCounts = new LoadReport.Counts[ids.size()];
+        for (int i = 0; i < ids.size(); i++) {
+            Path p = file(ids.get(i), published.get(ids.get(i)).gen);
+            LoadReport.Counts c = new LoadReport.Counts();
+            partCounts[i] = c;
+            parts.add(pool.submit(() -> {
+                List<Task> out = new ArrayList<>();
+                Record rec = new Record();
+                LineReader.forEachLine(p, (buf, start, end) -> Storage.decode(rec, buf, start, end, out, c));
+                c.bytes += Files.size(p);
+                for (Task t : out) {
+                    t.markSaved(t.getVersion());
+                }
+                return out;
+            }));
+        }
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < parts.size(); i++) {
+            tasks.addAll(parts.get(i).join());
+            counts.add(partCounts[i]);
+        }
+        deleteUnlisted(published);
+        isInSync = true;
+        return tasks;
+    }
+
+    /**
+     * Makes the next save look at every task; needed once tasks have changed
+     * behind the change source's back, such as by journal replay.
+     */
+    void requireScan() {
+        isInSync = false;
+    }
+
+    /**
+     * Like {@link #write} but rewrites only the segments holding
+     * {@code changedIds}, looking their tasks up in {@code source}. Falls back
+     * to a full pass if the segments may be out of step.
+     */
+    void writeChanged(List<Task> tasks, long[] changedIds, ChangeSource source, long gen, Path tmp)
+            throws IOException {
+        if (!isInSync || published == null) {
+            write(tasks, gen, tmp);
+            return;
+        }
+        begin(new TreeMap<>(published));
+        long[] segs = new long[changedIds.length];
+        for (int i = 0; i < changedIds.length; i++) {
+            segs[i] = changedIds[i] / SPAN;
+        }
+        Arrays.sort(segs);
+        List<Task> run = new ArrayList<>(SPAN);
+        for (int i = 0; i < segs.length; i++) {
+            long seg = segs[i];
+            if (i > 0 && seg == segs[i - 1]) {
+                continue;
+            }
+            run.clear();
+            for (long id = Math.max(1, seg * SPAN); id < (seg + 1) * SPAN; id++) {
+                Task t = source.getById(id);
+                if (t != null) {
+                    run.add(t);
+                }
+            }
+            if (run.isEmpty()) {
+                Entry old = pending.remove(seg);
+                if (old != null) {
+                    superseded.add(file(seg, old.gen));
+                }
+            } else {
+                writeSegment(seg, run, true, gen);
+            }
+        }
+        lastBytesWritten += writeManifest(pending, gen, tmp);
+    }
+
+    /**
+     * Writes the dirty segments of {@code tasks} and a new manifest to
+     * {@code tmp}; {@link #publish} makes them current. Clean segments cost
+     * one pass over their tasks and nothing on disk.
+     */
+    void write(List<Task> tasks, long gen, Path tmp) throws IOException {
+        if (published == null) {
+            published = readManifest();
+        }
+        if (!isIdOrdered(tasks)) {
+            List<Task> sorted = new ArrayList<>(tasks);
+            sorted.sort(Comparator.comparingLong(Task::getId));
+            tasks = sorted;
+        }
+        begin(new TreeMap<>());
+
+        List<Task> run = new ArrayList<>(SPAN);
+        long runSeg = -1;
+        boolean isRunDirty = false;
+        for (Task t : tasks) {
+            long seg = t.getId() / SPAN;
+            if (seg != runSeg && !run.isEmpty()) {
+                writeSegment(runSeg, run, isRunDirty, gen);
+                run.clear();
+                isRunDirty = false;
+            }
+            runSeg = seg;
+            run.add(t);
+            isRunDirty |= t.isDirty();
+        }
+        if (!run.isEmpty()) {
+            writeSegment(runSeg, run, isRunDirty, gen);
+        }
+        for (Map.Entry<Long, Entry> e : published.entrySet()) {
+            if (!pending.containsKey(e.getKey())) {
+                superseded.add(file(e.getKey(), e.getValue().gen));
+            }
+        }
+        lastBytesWritten += writeManifest(pending, gen, tmp);
+    }
+
+    private void begin(TreeMap<Long, Entry> next) throws IOException {
+        Files.createDirectories(dir);
+        isInSync = false;
+        pending = next;
+        superseded = new ArrayList<>();
+        written = new ArrayList<>();
+        writtenVersions = new int[16];
+        lastBytesWritten = 0;
+    }
+
+    /** Rewrites one segment unless it is clean and still holds as many tasks. */
+    private void writeSegment(long seg, List<Task> run, boolean isDirty, long gen) throws IOException {
+        Entry old = published.get(seg);
+        if (!isDirty && old != null && old.count == run.size()) {
+            pending.put(seg, old);
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(file(seg, gen), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            Writer w = new OutputStreamWriter(
+                    new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16), StandardCharsets.UTF_8);
+            for (Task t : run) {
+                if (written.size() == writtenVersions.length) {
+                    writtenVersions = Arrays.copyOf(writtenVersions, writtenVersions.length * 2);
+                }
+                writtenVersions[written.size()] = t.getVersion();
+                written.add(t);
+                w.write(Record.withChecksum(Storage.serialize(t)));
+                w.write('\n');
+            }
+            w.flush();
+            ch.force(true);
+            lastBytesWritten += ch.size();
+        }
+        if (old != null && old.gen != gen) {
+            superseded.add(file(seg, old.gen));
+        }
+        pending.put(seg, new Entry(gen, run.size()));
+    }
+
+    private static boolean isIdOrdered(List<Task> tasks) {
+        long prev = 0;
+        for (Task t : tasks) {
+            if (t.getId() <= prev) {
+                return false;
+            }
+            prev = t.getId();
+        }
+        return true;
+    }
+
+    /**
+     * Called once {@code tmp} has replaced the manifest: the written tasks
+     * are clean and superseded segment files can go.
+     */
+    void publish() throws IOException {
+        published = pending;
+        pending = null;
+        for (int i = 0; i < written.size(); i++) {
+            written.get(i).markSaved(writtenVersions[i]);
+        }
+        written = List.of();
+        for (Path p : superseded) {
+            Files.deleteIfExists(p);
+        }
+        superseded = List.of();
+        isInSync = true;
+    }
+
+    private long writeManifest(TreeMap<Long, Entry> entries, long gen, Path tmp) throws IOException {
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+            CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32C());
+            Writer w = new OutputStreamWriter(checked, StandardCharsets.UTF_8);
+            w.write(Storage.header(gen));
+            w.write(MARKER + SPAN + "\n");
+            for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+                w.write(e.getKey() + " " + e.getValue().gen + " " + e.getValue().count + "\n");
+            }
+            w.flush();
+            out.write(Storage.trailer(entries.size(), checked.getChecksum().getValue()));
+            out.flush();
+            ch.force(true);
+            return ch.size();
+        }
+    }
+
+    private TreeMap<Long, Entry> readManifest() throws IOException {
+        TreeMap<Long, Entry> entries = new TreeMap<>();
+        if (!isManifest(manifest)) {
+            return entries;
+        }
+        for (String line : Files.readAllLines(manifest, StandardCharsets.UTF_8)) {
+            if (line.startsWith("//") || line.isBlank()) {
+                continue;
+            }
+            String[] parts = line.trim().split(" ");
+            try {
+                entries.put(Long.parseLong(parts[0]),
+                        new Entry(Long.parseLong(parts[1]), Integer.parseInt(parts[2])));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Skipped bad manifest line: " + line);
+            }
+        }
+        return entries;
+    }
+
+    /** Deletes every segment file and the directory; for when the snapshot stops being segmented. */
+    void deleteAll() throws IOException {
+        deleteUnlisted(Map.of());
+        Files.deleteIfExists(dir);
+    }
+
+    private void deleteUnlisted(Map<Long, Entry> entries) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Set<Path> listed = new HashSet<>();
+        for (Map.Entry<Long, Entry> e : entries.entrySet()) {
+            listed.add(file(e.getKey(), e.getValue().gen));
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.jsonl")) {
+            for (Path p : files) {
+                if (!listed.contains(p)) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    private Path file(long seg, long gen) {
+        return dir.resolve(seg + "-" + gen + ".jsonl");
+    }
+}
@@ -6,19 +6,33 @@ import garfield.task.Todo;
 import garfield.task.Deadline;
 import garfield.task.Event;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
 
 /**
  * Loads and saves tasks to disk using newline-delimited JSON (NDJSON).
@@ -27,20 +41,150 @@ import java.util.stream.Stream;
  * Each line is a single JSON object, with Base64-encoded text fields to avoid
  * escaping issues.
  * The file and parent directory are created on first use if absent.
+ *
+ * <p>
+ * Besides full rewrites via {@link #save(List)}, individual mutations can be
+ * appended to a write-ahead journal next to the snapshot
+ * ({@code <file>.journal}). The journal is replayed on {@link #load()} and
+ * folded back into the snapshot in the background once it grows past
+ * {@link #DEFAULT_COMPACT_THRESHOLD} bytes.
+ *
+ * <p>
+ * Snapshot and journal both start with a {@code // gen N} header. A snapshot
+ * of generation {@code G} already contains every journal with generation
+ * {@code <= G}, so a crash at any point of a compaction never replays the same
+ * records twice.
+ *
+ * <p>
+ * Snapshots of at least {@link #PARALLEL_LOAD_THRESHOLD} bytes are decoded in
+ * newline-aligned chunks on the common fork-join pool; see
+ * {@link #getLastChunkTimings()}.
+ *
+ * <p>
+ * Snapshots can alternatively be written in the compact {@link Format#BINARY}
+ * format. The format of an existing snapshot is detected on load, so switching
+ * formats only takes effect on the next save or compaction. The journal is
+ * always NDJSON. {@link Format#SEGMENTED} splits the snapshot into
+ * {@link Segments} so saves and compactions rewrite only what changed.
+ *
+ * <p>
+ * Journal appends only go to an in-memory buffer. The buffer reaches the disk
+ * on {@link #flush()}, which also fsyncs, or periodically once
+ * {@link #scheduleFlushes(Duration)} has been called, so a burst of commands
+ * costs a single write. Snapshots are fsynced before they atomically replace
+ * the previous one. {@link #close()} flushes whatever is still pending.
+ *
+ * <p>
+ * Every record, in snapshots and the journal, carries a CRC32C; snapshot
+ * records that fail it are skipped. On load, journal replay stops at the first
+ * record that fails it or no longer applies, since a crash mid-write can only
+ * tear the tail, and the result is folded into a fresh snapshot so later
+ * appends start clean. NDJSON snapshots end with a
+ * {@code // end <count> <crc32c>} trailer. A snapshot that fails it but whose
+ * damage the record checksums account for loses just those records and the
+ * journal is replayed on top, as does a binary snapshot with damaged records;
+ * an NDJSON snapshot that is truncated or otherwise unaccounted for is set
+ * aside and the newest intact backup (see {@link #setBackupCount(int)}) is
+ * loaded instead. Either way a copy is kept as {@code <file>.damaged}.
+ * {@link #getLastLoadReport()} tells how much was read and dropped.
  */
-public class Storage {
+public class Storage implements Closeable {
+
+    /** On-disk format used when writing snapshots. */
+    public enum Format {
+        NDJSON, BINARY, SEGMENTED
+    }
+
+    public static final long DEFAULT_COMPACT_THRESHOLD = 1L << 20;
+    public static final long PARALLEL_LOAD_THRESHOLD = 8L << 20;
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofSeconds(1);
+
+    private static final String GEN_HEADER = "// gen ";
+    private static final String CRC_MARKER = "// crc32c";
+    private static final String END_TRAILER = "// end ";
+
     private final Path file;
+    private final Path journal;
+    private final Path compacting;
+    private final long compactThreshold;
+    private final Format format;
+    private final Segments segments;
+
+    private final Object lock = new Object();
+    private final ScheduledExecutorService background = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "garfield-storage");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel journalChannel;
+    private BufferedWriter journalOut;
+    private long journalBytes;
+    private long generation = 1;
+    private long snapshotGeneration;
+    private boolean isCompacting;
+    private int backupCount;
+    private ChangeSource changes;
+    private List<ChunkTiming> lastChunkTimings = List.of();
+    private volatile LoadReport lastLoadReport = LoadReport.NONE;
 
     public Storage(Path file) {
+        this(file, DEFAULT_COMPACT_THRESHOLD);
+    }
+
+    public Storage(Path file, long compactThreshold) {
+        this(file, compactThreshold, Format.NDJSON);
+    }
+
+    public Storage(Path file, long compactThreshold, Format format) {
         assert file != null : "Storage path must not be null";
+        assert compactThreshold > 0 : "Compaction threshold must be positive";
+        assert format != null : "Storage format must not be null";
+        this.format = format;
         this.file = file;
+        this.journal = sibling(file, ".journal");
+        this.compacting = sibling(file, ".journal.compacting");
+        this.compactThreshold = compactThreshold;
+        this.segments = format == Format.SEGMENTED ? new Segments(file) : null;
+    }
+
+    /**
+     * Keeps the {@code count} previous snapshots as {@code <file>.bak1}
+     * (newest) to {@code <file>.bakN}. Backups are hard links where the file
+     * system allows, so they cost no copying. The default is 0. Segmented
+     * snapshots are not backed up, since their manifest names files that the
+     * next save deletes.
+     *
+     * @param count number of backups to keep
+     */
+    public void setBackupCount(int count) {
+        assert count >= 0 : "Backup count must not be negative";
+        synchronized (lock) {
+            this.backupCount = count;
+        }
+    }
+
+    /**
+     * Lets saves ask {@code source} which tasks changed. Segmented snapshots
+     * then rewrite only those tasks' segments without a pass over the whole
+     * list; other formats just drain the source.
+     *
+     * @param source the list being saved
+     */
+    public void trackChanges(ChangeSource source) {
+        synchronized (lock) {
+            this.changes = source;
+        }
     }
 
     /**
-     * Loads tasks from disk.
+     * Loads tasks from disk, replaying any journal records on top of the
+     * snapshot.
      *
      * <p>
-     * Unknown or corrupted lines are skipped silently; the remainder are returned.
+     * Unknown or corrupted snapshot lines are skipped; the remainder are
+     * returned. Torn journal tails and damaged snapshots are reported on
+     * stderr and repaired as described above.
      *
      * @return list of tasks (possibly empty)
      * @throws IOException if the file cannot be read or created
@@ -48,67 +192,700 @@ public class Storage {
     public List<Task> load() throws IOException {
         ensureFileReady();
 
-        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
-            return lines
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty() && !s.startsWith("//"))
-                    .map(s -> {
-                        try {
-                            String type = getStr(s, "type");
-                            boolean done = getBool(s, "done");
-                            String desc = unb64(getStr(s, "desc_b64"));
-
-                            Task t;
-                            switch (type) {
-                                case "T":
-                                    t = new Todo(desc);
-                                    break;
-                                case "D": {
-                                    String by = unb64(nvl(getStr(s, "by_b64")));
-                                    t = new Deadline(desc, by);
-                                    break;
-                                }
-                                case "E": {
-                                    String from = unb64(nvl(getStr(s, "from_b64")));
-                                    String to = unb64(nvl(getStr(s, "to_b64")));
-                                    t = new Event(desc, from, to);
-                                    break;
-                                }
-                                default:
-                                    return null;
-                            }
-
-                            if (done) {
-                                t.markAsDone();
-                            }
-                            return t;
-                        } catch (Exception ignore) {
-                            return null;
-                        }
-                    })
-                    .filter(Objects::nonNull)
-                    .collect(Collectors.toList());
+        synchronized (lock) {
+            long t0 = System.nanoTime();
+            LoadReport.Counts counts = new LoadReport.Counts();
+            closeJournal();
+            Path source = file;
+            boolean needsRewrite = false;
+            List<Task> tasks = null;
+            if (checkSnapshot(file) == Record.CHECKSUM_BAD) {
+                tasks = salvage(file, counts);
+                if (tasks == null) {
+                    source = intactBackup();
+                } else {
+                    Files.copy(file, sibling(file, ".damaged"), StandardCopyOption.REPLACE_EXISTING);
+                }
+                needsRewrite = true;
+            }
+            // Salvaged and binary snapshots hold a null in place of each record they lost.
+            boolean hasPlaceholders = tasks != null || BinarySnapshot.isBinary(source);
+            long snapshotGen = BinarySnapshot.isBinary(source)
+                    ? BinarySnapshot.readGeneration(source)
+                    : readGeneration(source);
+            if (tasks == null) {
+                tasks = loadSnapshot(source, counts);
+                if (hasPlaceholders && counts.checksumFailures + counts.skipped > 0) {
+                    System.err.println("Snapshot is damaged, dropped " + (counts.checksumFailures + counts.skipped)
+                            + " unreadable record(s)");
+                    if (source == file) {
+                        Files.copy(file, sibling(file, ".damaged"), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    needsRewrite = true;
+                }
+            }
+            long bytes = Files.size(source);
+            if (source != file) {
+                Files.move(file, sibling(file, ".damaged"), StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            // Journals apply only in unbroken generation order; one that does not
+            // follow the snapshot was written against a different list.
+            long expected = snapshotGen + 1;
+            for (Path j : new Path[] { compacting, journal }) {
+                long gen = readGeneration(j);
+                if (gen <= snapshotGen) {
+                    continue;
+                }
+                if (gen != expected) {
+                    System.err.println("Skipped " + j.getFileName() + ": generation " + gen
+                            + " does not follow " + (expected - 1));
+                    needsRewrite = true;
+                    continue;
+                }
+                int dropped = replay(j, tasks, counts);
+                bytes += Files.size(j);
+                expected++;
+                if (dropped > 0) {
+                    // A later journal was written on top of the records just dropped.
+                    needsRewrite = true;
+                    if (j == compacting && Files.exists(journal)) {
+                        System.err.println("Skipped " + journal.getFileName() + ": it follows dropped records");
+                    }
+                    break;
+                }
+            }
+            if (hasPlaceholders) {
+                tasks.removeIf(Objects::isNull);
+            }
+            long nextGen = Math.max(snapshotGen + 1, expected - 1);
+
+            // A journal left over from an interrupted compaction, or a repaired
+            // load, is folded into a fresh snapshot so that subsequent appends go
+            // to a single clean journal.
+            if (Files.exists(compacting) || needsRewrite) {
+                writeSnapshot(tasks, nextGen, sibling(file, ".tmp"));
+                Files.deleteIfExists(compacting);
+                Files.deleteIfExists(journal);
+                nextGen++;
+            } else if (readGeneration(journal) != nextGen) {
+                Files.deleteIfExists(journal);
+            }
+            if (segments != null && counts.journalRecords > 0) {
+                segments.requireScan();
+            }
+            snapshotGeneration = nextGen - 1;
+            generation = nextGen;
+            lastLoadReport = new LoadReport(counts, bytes + counts.bytes, System.nanoTime() - t0, source != file);
+            return tasks;
+        }
+    }
+
+    /**
+     * Returns per-chunk timings of the last {@link #load()}, or an empty list if
+     * the snapshot was small enough to be read sequentially.
+     *
+     * @return chunk timings in file order
+     */
+    public List<ChunkTiming> getLastChunkTimings() {
+        return lastChunkTimings;
+    }
+
+    /**
+     * Returns what the last {@link #load()} read and dropped, or
+     * {@link LoadReport#NONE} before the first load.
+     */
+    public LoadReport getLastLoadReport() {
+        return lastLoadReport;
+    }
+
+    private List<Task> loadSnapshot(Path source, LoadReport.Counts counts) throws IOException {
+        lastChunkTimings = List.of();
+        if (BinarySnapshot.isBinary(source)) {
+            return BinarySnapshot.read(source, counts);
+        }
+        if (Segments.isManifest(source)) {
+            Segments reader = segments != null ? segments : new Segments(source);
+            return reader.read(ForkJoinPool.commonPool(), counts);
+        }
+        if (Files.size(source) >= PARALLEL_LOAD_THRESHOLD) {
+            ChunkedLoader loader = new ChunkedLoader();
+            List<Task> tasks = loader.load(source, ForkJoinPool.commonPool(), counts);
+            lastChunkTimings = List.copyOf(loader.timings());
+            return tasks;
+        }
+        List<Task> tasks = new ArrayList<>();
+        Record rec = new Record();
+        LineReader.forEachLine(source, (buf, start, end) -> decode(rec, buf, start, end, tasks, counts));
+        return tasks;
+    }
+
+    /** Decodes one snapshot line into {@code out}, counting what was dropped. */
+    static void decode(Record rec, byte[] buf, int start, int end, List<Task> out, LoadReport.Counts counts) {
+        if (Record.checkChecksum(buf, start, end) == Record.CHECKSUM_BAD) {
+            counts.checksumFailures++;
+            return;
         }
+        Task t = rec.parse(buf, start, end) ? toTask(rec) : null;
+        if (t == null) {
+            counts.skipped++;
+            return;
+        }
+        out.add(t);
+        counts.records++;
     }
 
     /**
      * Saves the given tasks to disk, replacing previous content.
      *
+     * <p>
+     * The journal is discarded afterwards since the snapshot now covers it.
+     *
      * @param tasks tasks to serialize
      * @throws IOException if writing fails
      */
     public void save(List<Task> tasks) throws IOException {
         ensureDirReady();
-        List<String> lines = new ArrayList<>();
-        for (Task t : tasks)
-            lines.add(serialize(t));
-        Files.write(file, lines, StandardCharsets.UTF_8,
-                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        synchronized (lock) {
+            closeJournal();
+            writeSnapshot(tasks, generation, sibling(file, ".tmp"));
+            Files.deleteIfExists(journal);
+            snapshotGeneration = generation++;
+        }
 
         assert Files.exists(file.getParent()) : "data directory should exist after save";
         assert Files.exists(file) : "data file should exist after save";
     }
 
+    /**
+     * Rewrites the tasks stored at {@code file}, journal included, as a
+     * snapshot in {@code format}. The current format is detected, so any
+     * format converts to any other; converting away from
+     * {@link Format#SEGMENTED} also deletes the segment files.
+     *
+     * @param file snapshot to convert in place
+     * @param format format to write
+     * @return number of tasks converted
+     * @throws IOException if reading or writing fails
+     */
+    public static int convert(Path file, Format format) throws IOException {
+        boolean wasSegmented = Segments.isManifest(file);
+        try (Storage target = new Storage(file, DEFAULT_COMPACT_THRESHOLD, format)) {
+            List<Task> tasks = target.load();
+            target.save(tasks);
+            if (wasSegmented && format != Format.SEGMENTED) {
+                new Segments(file).deleteAll();
+            }
+            return tasks.size();
+        }
+    }
+
+    /**
+     * Appends a record for a newly added task to the journal.
+     *
+     * @param t the task that was appended to the end of the list
+     * @throws IOException if writing fails
+     */
+    public void appendAdded(Task t) throws IOException {
+        appendRecord("{\"op\":\"add\"," + serialize(t).substring(1));
+    }
+
+    /**
+     * Appends a record for a task whose done flag changed.
+     *
+     * @param idx1 1-based index of the task
+     * @param done new done state
+     * @throws IOException if writing fails
+     */
+    public void appendMarked(int idx1, boolean done) throws IOException {
+        appendRecord("{\"op\":\"mark\",\"idx\":" + idx1 + ",\"done\":" + done + "}");
+    }
+
+    /**
+     * Appends a record for a deleted task.
+     *
+     * @param idx1 1-based index the task had before removal
+     * @throws IOException if writing fails
+     */
+    public void appendDeleted(int idx1) throws IOException {
+        appendRecord("{\"op\":\"delete\",\"idx\":" + idx1 + "}");
+    }
+
+    /**
+     * Appends a record for a rescheduled deadline or event.
+     *
+     * @param idx1 1-based index of the task
+     * @param t the task after rescheduling
+     * @throws IOException if writing fails
+     */
+    public void appendSnoozed(int idx1, Task t) throws IOException {
+        StringBuilder sb = new StringBuilder("{\"op\":\"snooze\",\"idx\":").append(idx1);
+        if (t instanceof Deadline d) {
+            sb.append(",\"by_b64\":\"").append(b64(d.getBy())).append("\"");
+        } else if (t instanceof Event e) {
+            sb.append(",\"from_b64\":\"").append(b64(e.getFrom())).append("\"");
+            sb.append(",\"to_b64\":\"").append(b64(e.getTo())).append("\"");
+        }
+        appendRecord(sb.append("}").toString());
+    }
+
+    /**
+     * Starts a background compaction if the journal has outgrown its threshold.
+     *
+     * <p>
+     * The list is copied on the calling thread; serialization and the rewrite
+     * happen on a dedicated daemon thread. Mutations made to individual tasks
+     * while the snapshot is being written are harmless because every journal
+     * record is replayed idempotently.
+     *
+     * @param tasks the current in-memory list
+     * @throws IOException if the journal cannot be rotated
+     */
+    public void compactIfNeeded(List<Task> tasks) throws IOException {
+        final List<Task> copy;
+        final long gen;
+        synchronized (lock) {
+            if (isCompacting || journalBytes < compactThreshold) {
+                return;
+            }
+            if (segments != null) {
+                // Only dirty segments are rewritten, which is cheap enough to do inline.
+                save(tasks);
+                return;
+            }
+            closeJournal();
+            if (changes != null) {
+                // Full snapshots do not need the ids; drop them so they do not pile up.
+                changes.drainChangedIds();
+            }
+            Files.move(journal, compacting, StandardCopyOption.REPLACE_EXISTING);
+            gen = generation++;
+            copy = new ArrayList<>(tasks);
+            isCompacting = true;
+        }
+        background.execute(() -> {
+            Path tmp = sibling(file, ".compact.tmp");
+            try {
+                writeTemp(copy, gen, tmp, null);
+                synchronized (lock) {
+                    // A full save() may have overtaken this compaction.
+                    if (gen > snapshotGeneration) {
+                        publish(tmp);
+                        snapshotGeneration = gen;
+                    }
+                    Files.deleteIfExists(tmp);
+                    Files.deleteIfExists(compacting);
+                }
+            } catch (IOException e) {
+                System.err.println("Compaction failed: " + e.getMessage());
+            } finally {
+                synchronized (lock) {
+                    isCompacting = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Writes buffered journal records to disk and forces them to the device.
+     *
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        synchronized (lock) {
+            if (journalOut != null) {
+                journalOut.flush();
+                journalChannel.force(false);
+            }
+        }
+    }
+
+    /**
+     * Flushes the journal every {@code interval} on a background thread until
+     * {@link #close()} is called. Commands issued in between are coalesced into
+     * one write.
+     *
+     * @param interval time between flushes
+     */
+    public void scheduleFlushes(Duration interval) {
+        long millis = Math.max(1, interval.toMillis());
+        background.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (IOException e) {
+                System.err.println("Flush failed: " + e.getMessage());
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Flushes pending journal records and waits briefly for a running
+     * compaction to finish.
+     *
+     * @throws IOException if the final flush fails
+     */
+    @Override
+    public void close() throws IOException {
+        background.shutdown();
+        try {
+            background.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (lock) {
+            closeJournal();
+        }
+    }
+
+    private void appendRecord(String line) throws IOException {
+        synchronized (lock) {
+            if (journalOut == null) {
+                ensureDirReady();
+                journalChannel = FileChannel.open(journal,
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                journalOut = new BufferedWriter(Channels.newWriter(journalChannel, StandardCharsets.UTF_8), 1 << 16);
+                journalBytes = journalChannel.size();
+                if (journalBytes == 0) {
+                    writeJournalLine(GEN_HEADER + generation);
+                }
+            }
+            writeJournalLine(Record.withChecksum(line));
+        }
+    }
+
+    private void writeJournalLine(String line) throws IOException {
+        journalOut.write(line);
+        journalOut.newLine();
+        journalBytes += line.length() + 1;
+    }
+
+    private void closeJournal() throws IOException {
+        if (journalOut != null) {
+            journalOut.flush();
+            journalChannel.force(false);
+            journalOut.close();
+            journalOut = null;
+            journalChannel = null;
+        }
+    }
+
+    /** Must hold {@link #lock}. */
+    private void writeSnapshot(List<Task> tasks, long gen, Path tmp) throws IOException {
+        writeTemp(tasks, gen, tmp, changes == null ? null : changes.drainChangedIds());
+        publish(tmp);
+    }
+
+    /**
+     * Bytes written by the last segmented save, or 0 for other formats.
+     */
+    public long getLastSegmentBytesWritten() {
+        return segments == null ? 0 : segments.getLastBytesWritten();
+    }
+
+    /**
+     * Writes {@code tasks} to {@code tmp}.
+     *
+     * @param changedIds what changed since the last save, or {@code null} if
+     *                   unknown
+     */
+    private void writeTemp(List<Task> tasks, long gen, Path tmp, long[] changedIds) throws IOException {
+        if (segments != null) {
+            if (changedIds != null) {
+                segments.writeChanged(tasks, changedIds, changes, gen, tmp);
+            } else {
+                segments.write(tasks, gen, tmp);
+            }
+            return;
+        }
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(ch), 1 << 16);
+            if (format == Format.BINARY) {
+                BinarySnapshot.write(tasks, gen, out);
+            } else {
+                CheckedOutputStream checked = new CheckedOutputStream(out, new CRC32C());
+                Writer w = new OutputStreamWriter(checked, StandardCharsets.UTF_8);
+                w.write(header(gen));
+                for (Task t : tasks) {
+                    w.write(Record.withChecksum(serialize(t)));
+                    w.write('\n');
+                }
+                w.flush();
+                out.write(trailer(tasks.size(), checked.getChecksum().getValue()));
+            }
+            out.flush();
+            ch.force(true);
+        }
+    }
+
+    /** First lines of an NDJSON snapshot or segment manifest. */
+    static String header(long gen) {
+        return GEN_HEADER + gen + "\n" + CRC_MARKER + "\n";
+    }
+
+    /** Last line of an NDJSON snapshot or segment manifest. */
+    static byte[] trailer(int count, long crc) {
+        return (END_TRAILER + count + " " + String.format("%08x", crc) + "\n").getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /** Must hold {@link #lock}. */
+    private void publish(Path tmp) throws IOException {
+        if (backupCount > 0 && segments == null && Files.exists(file)) {
+            rotateBackups();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        forceDirectory();
+        if (segments != null) {
+            segments.publish();
+        }
+    }
+
+    private void rotateBackups() throws IOException {
+        Files.deleteIfExists(backup(backupCount));
+        for (int i = backupCount - 1; i >= 1; i--) {
+            if (Files.exists(backup(i))) {
+                Files.move(backup(i), backup(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        try {
+            Files.createLink(backup(1), file);
+        } catch (UnsupportedOperationException | IOException e) {
+            Files.copy(file, backup(1), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Makes a rename durable. Not every platform can open a directory, so this is best effort. */
+    private void forceDirectory() {
+        Path dir = file.toAbsolutePath().getParent();
+        try (FileChannel ch = FileChannel.open(dir, StandardOpenOption.READ)) {
+            ch.force(true);
+        } catch (IOException e) {
+            // The rename still happened; it may just not survive a power cut.
+        }
+    }
+
+    private Path backup(int i) {
+        return sibling(file, ".bak" + i);
+    }
+
+    /** The newest backup that passes its checksum, or the damaged file if there is none. */
+    private Path intactBackup() throws IOException {
+        for (int i = 1; Files.exists(backup(i)); i++) {
+            if (checkSnapshot(backup(i)) != Record.CHECKSUM_BAD) {
+                System.err.println("Snapshot is damaged, restored " + backup(i).getFileName());
+                return backup(i);
+            }
+        }
+        System.err.println("Snapshot is damaged and no intact backup exists, keeping what is readable");
+        return file;
+    }
+
+    /**
+     * Reads an NDJSON snapshot that failed its trailer checksum, keeping a
+     * {@code null} in place of each record that fails its own, so journal
+     * records still find their tasks by position. The caller removes the
+     * {@code null}s after replay.
+     *
+     * @return the tasks, or {@code null} if the damage is not confined to
+     *         whole records: the trailer is missing, or the records read do
+     *         not add up to the count it gives
+     */
+    private static List<Task> salvage(Path p, LoadReport.Counts counts) throws IOException {
+        if (Segments.isManifest(p)) {
+            return null;
+        }
+        String trailer;
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            trailer = trailerLine(ch, ch.size());
+        }
+        String[] parts = trailer == null ? new String[0] : trailer.substring(END_TRAILER.length()).split(" ");
+        long expected;
+        try {
+            expected = parts.length == 2 ? Long.parseLong(parts[0]) : -1;
+        } catch (NumberFormatException e) {
+            expected = -1;
+        }
+        if (expected < 0) {
+            return null;
+        }
+        List<Task> tasks = new ArrayList<>();
+        LoadReport.Counts read = new LoadReport.Counts();
+        Record rec = new Record();
+        LineReader.forEachLine(p, (buf, start, end) -> {
+            if (Record.checkChecksum(buf, start, end) != Record.CHECKSUM_OK) {
+                read.checksumFailures++;
+                tasks.add(null);
+                return;
+            }
+            decode(rec, buf, start, end, tasks, read);
+        });
+        if (read.checksumFailures == 0 || read.records + read.skipped + read.checksumFailures != expected) {
+            return null;
+        }
+        System.err.println("Snapshot is damaged, dropped " + read.checksumFailures + " unreadable record(s)");
+        counts.add(read);
+        return tasks;
+    }
+
+    /**
+     * Verifies an NDJSON snapshot against its trailer.
+     *
+     * @return {@link Record#CHECKSUM_NONE} for binary snapshots, which check
+     *         each record as it is read, and for ones written before
+     *         snapshots had checksums, else
+     *         {@link Record#CHECKSUM_OK} or {@link Record#CHECKSUM_BAD}
+     */
+    private static int checkSnapshot(Path p) throws IOException {
+        if (!Files.exists(p) || BinarySnapshot.isBinary(p)) {
+            return Record.CHECKSUM_NONE;
+        }
+        try (FileChannel ch = FileChannel.open(p, StandardOpenOption.READ)) {
+            long size = ch.size();
+            String head = readAscii(ch, 0, (int) Math.min(size, 64));
+            if (!head.contains("\n" + CRC_MARKER + "\n")) {
+                return Record.CHECKSUM_NONE;
+            }
+            String trailer = trailerLine(ch, size);
+            if (trailer == null) {
+                return Record.CHECKSUM_BAD;
+            }
+            String[] parts = trailer.substring(END_TRAILER.length()).split(" ");
+            long expected;
+            try {
+                expected = Long.parseLong(parts[parts.length - 1], 16);
+            } catch (NumberFormatException e) {
+                return Record.CHECKSUM_BAD;
+            }
+            long bodyEnd = size - trailer.length() - 1;
+            CRC32C crc = new CRC32C();
+            ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20);
+            for (long pos = 0; pos < bodyEnd;) {
+                buf.clear().limit((int) Math.min(buf.capacity(), bodyEnd - pos));
+                int n = ch.read(buf, pos);
+                if (n < 0) {
+                    return Record.CHECKSUM_BAD;
+                }
+                buf.flip();
+                crc.update(buf);
+                pos += n;
+            }
+            return crc.getValue() == expected ? Record.CHECKSUM_OK : Record.CHECKSUM_BAD;
+        }
+    }
+
+    /** The trailer line of a snapshot of {@code size} bytes, without its newline, or {@code null} if it has none. */
+    private static String trailerLine(FileChannel ch, long size) throws IOException {
+        int tailLength = (int) Math.min(size, 96);
+        String tail = readAscii(ch, size - tailLength, tailLength);
+        int lineStart = tail.lastIndexOf('\n', tail.length() - 2) + 1;
+        if (!tail.endsWith("\n") || !tail.startsWith(END_TRAILER, lineStart)) {
+            return null;
+        }
+        return tail.substring(lineStart, tail.length() - 1);
+    }
+
+    private static String readAscii(FileChannel ch, long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) >= 0) {
+            // Keep reading until the range is full or the file ends.
+        }
+        return new String(buf.array(), 0, buf.position(), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Applies the records of journal {@code j} in order, stopping at the first
+     * one that is torn or no longer fits the list.
+     *
+     * @return number of records dropped from that one on
+     */
+    private static int replay(Path j, List<Task> tasks, LoadReport.Counts counts) throws IOException {
+        Record rec = new Record();
+        int[] dropped = { 0 };
+        LineReader.forEachLine(j, (buf, start, end) -> {
+            // Records after a torn or misfitting one would land on the wrong positions.
+            if (dropped[0] == 0) {
+                boolean isIntact = Record.checkChecksum(buf, start, end) != Record.CHECKSUM_BAD;
+                if (isIntact && rec.parse(buf, start, end)) {
+                    try {
+                        apply(rec, tasks);
+                        counts.journalRecords++;
+                        return;
+                    } catch (RuntimeException e) {
+                        // The journal no longer matches the snapshot it was written against.
+                    }
+                } else if (!isIntact) {
+                    counts.checksumFailures++;
+                }
+            }
+            dropped[0]++;
+        });
+        if (dropped[0] > 0) {
+            System.err.println("Dropped " + dropped[0] + " torn or unappliable record(s) at the end of "
+                    + j.getFileName());
+        }
+        counts.tornRecords += dropped[0];
+        return dropped[0];
+    }
+
+    private static void apply(Record rec, List<Task> tasks) {
+        if (rec.op == null) {
+            return;
+        }
+        switch (rec.op) {
+            case Record.OP_ADD: {
+                Task t = toTask(rec);
+                if (t != null) {
+                    tasks.add(t);
+                }
+                break;
+            }
+            case Record.OP_MARK: {
+                Task t = tasks.get(rec.idx - 1);
+                if (t == null) {
+                    // A task lost to a damaged snapshot record keeps its place but takes no changes.
+                    break;
+                }
+                if (rec.done && !t.isDone()) {
+                    t.markAsDone();
+                } else if (!rec.done && t.isDone()) {
+                    t.markAsNotDone();
+                }
+                break;
+            }
+            case Record.OP_DELETE:
+                tasks.remove(rec.idx - 1);
+                break;
+            case Record.OP_SNOOZE: {
+                Task t = tasks.get(rec.idx - 1);
+                if (t instanceof Deadline d) {
+                    d.setBy(rec.by);
+                } else if (t instanceof Event e) {
+                    e.setSchedule(rec.from, rec.to);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+    }
+
+    private static long readGeneration(Path p) throws IOException {
+        if (!Files.exists(p)) {
+            return 0;
+        }
+        try (Stream<String> lines = Files.lines(p, StandardCharsets.UTF_8)) {
+            String first = lines.findFirst().orElse("").trim();
+            if (!first.startsWith(GEN_HEADER)) {
+                return 0;
+            }
+            try {
+                return Long.parseLong(first.substring(GEN_HEADER.length()).trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+    }
+
     private void ensureFileReady() throws IOException {
         ensureDirReady();
         if (!Files.exists(file))
@@ -121,8 +898,47 @@ public class Storage {
             Files.createDirectories(parent);
     }
 
-    private static String serialize(Task t) {
+    private static Path sibling(Path p, String suffix) {
+        return p.resolveSibling(p.getFileName().toString() + suffix);
+    }
+
+    static Task toTask(Record rec) {
+        if (rec.desc == null) {
+            return null;
+        }
+        try {
+            Task t;
+            switch (rec.type) {
+                case 'T':
+                    t = new Todo(rec.desc);
+                    break;
+                case 'D':
+                    t = new Deadline(rec.desc, nvl(rec.by));
+                    break;
+                case 'E':
+                    t = new Event(rec.desc, nvl(rec.from), nvl(rec.to));
+                    break;
+                default:
+                    return null;
+            }
+
+            if (rec.done) {
+                t.markAsDone();
+            }
+            if (rec.id > 0) {
+                t.setId(rec.id);
+            }
+            return t;
+        } catch (Exception ignore) {
+            return null;
+        }
+    }
+
+    static String serialize(Task t) {
         StringBuilder sb = new StringBuilder("{");
+        if (t.getId() > 0) {
+            sb.append("\"id\":").append(t.getId()).append(",");
+        }
         sb.append("\"type\":\"").append(typeOf(t)).append("\",");
         sb.append("\"done\":").append(t.isDone()).append(",");
         sb.append("\"desc_b64\":\"").append(b64(t.getDescription())).append("\"");
@@ -146,36 +962,11 @@ public class Storage {
         return "?";
     }
 
-    private static final Pattern STR_FIELD = Pattern.compile("\"([^\"]+)\"\\s*:\\s*\"([^\"]*)\"");
-    private static final Pattern BOOL_FIELD = Pattern.compile("\"([^\"]+)\"\\s*:\\s*(true|false)");
-
-    private static String getStr(String json, String key) {
-        Matcher m = STR_FIELD.matcher(json);
-        while (m.find()) {
-            if (m.group(1).equals(key))
-                return m.group(2);
-        }
-        return null;
-    }
-
-    private static boolean getBool(String json, String key) {
-        Matcher m = BOOL_FIELD.matcher(json);
-        while (m.find()) {
-            if (m.group(1).equals(key))
-                return Boolean.parseBoolean(m.group(2));
-        }
-        return false;
-    }
-
     private static String b64(String s) {
         return Base64.getEncoder().encodeToString(s.getBytes(StandardCharsets.UTF_8));
     }
 
-    private static String unb64(String s) {
-        return new String(Base64.getDecoder().decode(s), StandardCharsets.UTF_8);
-    }
-
     private static String nvl(String s) {
         return s == null ? "" : s;
     }
-}
\ No newline at end of file
+}
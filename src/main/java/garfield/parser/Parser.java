@@ -3,122 +3,328 @@ package garfield.parser;
 
 import garfield.core.GarfieldException;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 /**
  * Parses raw user input strings into structured commands and arguments.
  */
 public class Parser {
 
     public enum CommandType {
-        BYE, LIST, TODO, DEADLINE, EVENT, MARK, UNMARK, DELETE, FIND, UNKNOWN
+        BYE, LIST, TODO, DEADLINE, EVENT, MARK, UNMARK, DELETE, FIND, SNOOZE, BEGIN, COMMIT, DUE, BETWEEN, OVERDUE, STATS, UNKNOWN
     }
 
     /**
-     * Parses a full command line into a {@link Parsed} structure.
-     * 
-     * @param input the raw line entered by the user
-     * @return the parsed command
-     * @throws garfield.core.GarfieldException if the command is invalid or
-     *                                               incomplete
+     * Result of parsing one command line.
      */
     public static final class Parsed {
 
         public final CommandType type;
         public final String desc, by, from, to;
         public final Integer index;
+        public final Integer page, pageSize;
 
         private Parsed(CommandType t, String d, String b, String f, String to, Integer i) {
+            this(t, d, b, f, to, i, null, null);
+        }
+
+        private Parsed(CommandType t, String d, String b, String f, String to, Integer i,
+                Integer page, Integer pageSize) {
             this.type = t;
             this.desc = d;
             this.by = b;
             this.from = f;
             this.to = to;
             this.index = i;
+            this.page = page;
+            this.pageSize = pageSize;
         }
 
-        static Parsed bye() {
-            return new Parsed(CommandType.BYE, null, null, null, null, null);
+        static Parsed bare(CommandType type) {
+            return new Parsed(type, null, null, null, null, null);
         }
 
         static Parsed list() {
             return new Parsed(CommandType.LIST, null, null, null, null, null);
         }
+
+        static Parsed list(Integer page, Integer pageSize) {
+            return new Parsed(CommandType.LIST, null, null, null, null, null, page, pageSize);
+        }
     }
 
-    private static final Pattern TODO_RE = Pattern.compile("^todo\\s+(.+)$", Pattern.CASE_INSENSITIVE);
-    private static final Pattern DEADLINE_RE = Pattern.compile("^deadline\\s+(.+?)\\s*/by\\s*(.+)$",
-            Pattern.CASE_INSENSITIVE);
-    private static final Pattern EVENT_RE = Pattern.compile("^event\\s+(.+?)\\s*/from\\s*(.+?)\\s*/to\\s*(.+)$",
-            Pattern.CASE_INSENSITIVE);
+    /** Parses the arguments of one command; {@code args} is the index just past the command word. */
+    @FunctionalInterface
+    private interface Handler {
+        Parsed parse(String input, int args) throws GarfieldException;
+    }
 
-    private static int parseIndex(String cmd, String input) throws GarfieldException {
-        Matcher m = Pattern.compile("^" + Pattern.quote(cmd) + "\\s+(\\d+)$", Pattern.CASE_INSENSITIVE).matcher(input);
-        if (!m.matches()) {
-            throw new GarfieldException("Usage: " + cmd + " <task-number>");
+    /** A command word and its handler. */
+    private static final class Command {
+        final String word;
+        final Handler handler;
+
+        Command(String word, Handler handler) {
+            this.word = word;
+            this.handler = handler;
         }
-        return Integer.parseInt(m.group(1));
     }
 
+    private static final String UNKNOWN =
+            "Unknown command. Try: todo, deadline, event, list, mark, unmark, delete, find, snooze, due, between, overdue, "
+            + "begin, commit, stats, bye.";
+    private static final String LIST_USAGE = "Usage: list [page] [--page-size <n>]";
+    private static final String SNOOZE_USAGE = "Usage:\n"
+            + "  snooze <task-number> /by <when>\n"
+            + "  snooze <task-number> /from <start> /to <end>";
+    private static final String BETWEEN_USAGE = "Usage: between <from> <to>";
+
+    /** Commands bucketed by the lowercase first letter of their word. */
+    private static final Command[][] COMMANDS = new Command[26][];
+
+    static {
+        register("bye", bare(CommandType.BYE));
+        register("list", (in, a) -> a == in.length() ? Parsed.list() : parseList(in, a));
+        register("todo", Parser::parseTodo);
+        register("deadline", Parser::parseDeadline);
+        register("event", Parser::parseEvent);
+        register("mark", (in, a) -> index(CommandType.MARK, "mark", in, a));
+        register("unmark", (in, a) -> index(CommandType.UNMARK, "unmark", in, a));
+        register("delete", (in, a) -> index(CommandType.DELETE, "delete", in, a));
+        register("find", (in, a) -> {
+            String kw = in.substring(a).trim();
+            if (kw.isEmpty())
+                throw new GarfieldException("Usage: find <keyword>");
+            return new Parsed(CommandType.FIND, kw, null, null, null, null);
+        });
+        register("snooze", Parser::parseSnooze);
+        register("due", (in, a) -> {
+            String day = in.substring(a).trim();
+            if (day.isEmpty())
+                throw new GarfieldException("Usage: due <date>");
+            return new Parsed(CommandType.DUE, null, day, null, null, null);
+        });
+        register("between", Parser::parseBetween);
+        register("overdue", bare(CommandType.OVERDUE));
+        register("begin", bare(CommandType.BEGIN));
+        register("commit", bare(CommandType.COMMIT));
+        register("stats", bare(CommandType.STATS));
+    }
+
+    /** Handler for a command that takes no arguments. */
+    private static Handler bare(CommandType type) {
+        return (in, a) -> {
+            if (a < in.length()) {
+                throw new GarfieldException(UNKNOWN);
+            }
+            return Parsed.bare(type);
+        };
+    }
+
+    private static void register(String word, Handler handler) {
+        int slot = word.charAt(0) - 'a';
+        Command[] bucket = COMMANDS[slot] == null ? new Command[0] : COMMANDS[slot];
+        Command[] grown = new Command[bucket.length + 1];
+        System.arraycopy(bucket, 0, grown, 0, bucket.length);
+        grown[bucket.length] = new Command(word, handler);
+        COMMANDS[slot] = grown;
+    }
+
+    /**
+     * Parses a full command line into a {@link Parsed} structure.
+     *
+     * <p>
+     * The first whitespace-delimited token selects a handler from a table;
+     * matching is case-insensitive and no copies of the input are made. Each
+     * handler scans its own arguments by hand.
+     *
+     * @param input the raw line entered by the user
+     * @return the parsed command
+     * @throws GarfieldException if the command is invalid or incomplete
+     */
     public static Parsed parse(String input) throws GarfieldException {
         assert input != null : "Parser input must not be null";
 
         if (input == null || input.isEmpty()) {
-            throw new GarfieldException(
-                    "Unknown command. Try: todo, deadline, event, list, mark, unmark, delete, find, bye.");
+            throw new GarfieldException(UNKNOWN);
         }
 
-        if (input.equalsIgnoreCase("bye")) {
-            return Parsed.bye();
+        int wordEnd = 0;
+        while (wordEnd < input.length() && !Character.isWhitespace(input.charAt(wordEnd))) {
+            wordEnd++;
         }
-        if (input.equalsIgnoreCase("list")) {
-            return Parsed.list();
+        Command cmd = lookup(input, wordEnd);
+        if (cmd == null) {
+            throw new GarfieldException(UNKNOWN);
         }
+        return cmd.handler.parse(input, skipSpace(input, wordEnd));
+    }
 
-        if (input.toLowerCase().startsWith("mark")) {
-            return new Parsed(CommandType.MARK, null, null, null, null, parseIndex("mark", input));
+    private static Command lookup(String input, int wordEnd) {
+        int slot = Character.toLowerCase(input.charAt(0)) - 'a';
+        if (slot < 0 || slot >= COMMANDS.length || COMMANDS[slot] == null) {
+            return null;
         }
-        if (input.toLowerCase().startsWith("unmark")) {
-            return new Parsed(CommandType.UNMARK, null, null, null, null, parseIndex("unmark", input));
+        for (Command c : COMMANDS[slot]) {
+            if (c.word.length() == wordEnd && input.regionMatches(true, 0, c.word, 0, wordEnd)) {
+                return c;
+            }
         }
-        if (input.toLowerCase().startsWith("delete")) {
-            return new Parsed(CommandType.DELETE, null, null, null, null, parseIndex("delete", input));
+        return null;
+    }
+
+    private static Parsed parseTodo(String input, int args) throws GarfieldException {
+        String desc = input.substring(args).trim();
+        if (desc.isEmpty()) {
+            throw new GarfieldException("Usage: todo <description>");
         }
-        if (input.toLowerCase().startsWith("find")) {
-            Matcher mf = Pattern.compile("^find\\s+(.+)$", Pattern.CASE_INSENSITIVE).matcher(input);
-            if (!mf.matches())
-                throw new GarfieldException("Usage: find <keyword>");
-            return new Parsed(CommandType.FIND, mf.group(1).trim(), null, null, null, null);
+        return new Parsed(CommandType.TODO, desc, null, null, null, null);
+    }
+
+    private static Parsed parseDeadline(String input, int args) throws GarfieldException {
+        int by = indexOfIgnoreCase(input, "/by", args + 1);
+        if (args == input.length() || by < 0) {
+            throw new GarfieldException("Usage: deadline <desc> /by <when>");
         }
+        String desc = input.substring(args, by).trim(), when = input.substring(by + 3).trim();
+        if (desc.isEmpty() || when.isEmpty()) {
+            throw new GarfieldException("Usage: deadline <desc> /by <when>");
+        }
+        return new Parsed(CommandType.DEADLINE, desc, when, null, null, null);
+    }
+
+    private static Parsed parseEvent(String input, int args) throws GarfieldException {
+        int from = indexOfIgnoreCase(input, "/from", args + 1);
+        int to = from < 0 ? -1 : indexOfIgnoreCase(input, "/to", from + 5);
+        if (args == input.length() || from < 0 || to < 0) {
+            throw new GarfieldException("Usage: event <desc> /from <start> /to <end>");
+        }
+        String desc = input.substring(args, from).trim();
+        String start = input.substring(from + 5, to).trim(), end = input.substring(to + 3).trim();
+        if (desc.isEmpty() || start.isEmpty() || end.isEmpty()) {
+            throw new GarfieldException("Usage: event <desc> /from <start> /to <end>");
+        }
+        return new Parsed(CommandType.EVENT, desc, null, start, end, null);
+    }
+
+    /** Parses {@code snooze <n> /by <when>} or {@code snooze <n> /from <start> /to <end>}. */
+    private static Parsed parseSnooze(String input, int args) throws GarfieldException {
+        int numEnd = tokenEnd(input, args);
+        int idx = index(CommandType.SNOOZE, "snooze", input.substring(0, numEnd), args).index;
+        int from = indexOfIgnoreCase(input, "/from", numEnd);
+        if (from >= 0) {
+            int to = indexOfIgnoreCase(input, "/to", from + 5);
+            String start = to < 0 ? "" : input.substring(from + 5, to).trim();
+            String end = to < 0 ? "" : input.substring(to + 3).trim();
+            if (start.isEmpty() || end.isEmpty()) {
+                throw new GarfieldException(SNOOZE_USAGE);
+            }
+            return new Parsed(CommandType.SNOOZE, null, null, start, end, idx);
+        }
+        int by = indexOfIgnoreCase(input, "/by", numEnd);
+        String when = by < 0 ? "" : input.substring(by + 3).trim();
+        if (when.isEmpty()) {
+            throw new GarfieldException(SNOOZE_USAGE);
+        }
+        return new Parsed(CommandType.SNOOZE, null, when, null, null, idx);
+    }
+
+    /**
+     * Parses {@code between <from> <to>} where each bound is a date, optionally
+     * followed by a time token; a token without a dash is taken as that time.
+     */
+    private static Parsed parseBetween(String input, int args) throws GarfieldException {
+        int fromEnd = tokenEnd(input, args);
+        int next = skipSpace(input, fromEnd);
+        int nextEnd = tokenEnd(input, next);
+        if (nextEnd < input.length() && input.substring(next, nextEnd).indexOf('-') < 0) {
+            fromEnd = nextEnd;
+        }
+        String from = input.substring(args, fromEnd).trim();
+        String to = input.substring(fromEnd).trim();
+        if (from.isEmpty() || to.isEmpty()) {
+            throw new GarfieldException(BETWEEN_USAGE);
+        }
+        return new Parsed(CommandType.BETWEEN, null, null, from, to, null);
+    }
 
-        Matcher mt = TODO_RE.matcher(input);
-        if (mt.matches()) {
-            String desc = mt.group(1).trim();
-            if (desc.isEmpty()) {
-                throw new GarfieldException("Usage: todo <description>");
+    /** Parses a single task number argument without allocating. */
+    private static Parsed index(CommandType type, String cmd, String input, int args) throws GarfieldException {
+        int end = input.length();
+        while (end > args && Character.isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        long n = 0;
+        for (int i = args; i < end; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9' || n > Integer.MAX_VALUE) {
+                throw new GarfieldException("Usage: " + cmd + " <task-number>");
             }
-            return new Parsed(CommandType.TODO, desc, null, null, null, null);
+            n = n * 10 + (c - '0');
+        }
+        if (args == end || n > Integer.MAX_VALUE) {
+            throw new GarfieldException("Usage: " + cmd + " <task-number>");
         }
+        return new Parsed(type, null, null, null, null, (int) n);
+    }
 
-        Matcher md = DEADLINE_RE.matcher(input);
-        if (md.matches()) {
-            String desc = md.group(1).trim(), by = md.group(2).trim();
-            if (desc.isEmpty() || by.isEmpty()) {
-                throw new GarfieldException("Usage: deadline <desc> /by <when>");
+    /** Parses {@code list [page] [--page-size <n>]}, options in any order. */
+    private static Parsed parseList(String input, int args) throws GarfieldException {
+        Integer page = null;
+        Integer pageSize = null;
+        int i = args;
+        while (i < input.length()) {
+            int end = tokenEnd(input, i);
+            if (end - i == 11 && input.regionMatches(true, i, "--page-size", 0, 11) && pageSize == null) {
+                int valueStart = skipSpace(input, end);
+                if (valueStart == input.length()) {
+                    throw new GarfieldException(LIST_USAGE);
+                }
+                end = tokenEnd(input, valueStart);
+                pageSize = parsePositive(input, valueStart, end);
+            } else if (page == null && input.charAt(i) != '-') {
+                page = parsePositive(input, i, end);
+            } else {
+                throw new GarfieldException(LIST_USAGE);
             }
-            return new Parsed(CommandType.DEADLINE, desc, by, null, null, null);
+            i = skipSpace(input, end);
         }
+        return Parsed.list(page, pageSize);
+    }
 
-        Matcher me = EVENT_RE.matcher(input);
-        if (me.matches()) {
-            String desc = me.group(1).trim(), from = me.group(2).trim(), to = me.group(3).trim();
-            if (desc.isEmpty() || from.isEmpty() || to.isEmpty()) {
-                throw new GarfieldException("Usage: event <desc> /from <start> /to <end>");
+    private static int parsePositive(String input, int start, int end) throws GarfieldException {
+        long n = 0;
+        for (int i = start; i < end && n <= Integer.MAX_VALUE; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new GarfieldException(LIST_USAGE);
             }
-            return new Parsed(CommandType.EVENT, desc, null, from, to, null);
+            n = n * 10 + (c - '0');
+        }
+        if (n < 1 || n > Integer.MAX_VALUE) {
+            throw new GarfieldException(LIST_USAGE);
+        }
+        return (int) n;
+    }
+
+    private static int skipSpace(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int tokenEnd(String s, int i) {
+        while (i < s.length() && !Character.isWhitespace(s.charAt(i))) {
+            i++;
         }
+        return i;
+    }
 
-        throw new GarfieldException("Unknown command. Try: todo, deadline, event, list, mark, unmark, delete, bye.");
+    private static int indexOfIgnoreCase(String s, String needle, int from) {
+        for (int i = from; i + needle.length() <= s.length(); i++) {
+            if (s.regionMatches(true, i, needle, 0, needle.length())) {
+                return i;
+            }
+        }
+        return -1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,405 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.server;
+
+import garfield.core.CommandExecutor;
+import garfield.core.CommandResult;
+import garfield.core.GarfieldException;
+import garfield.core.ReplyFormat;
+import garfield.parser.Parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless front end serving the command engine on a loopback TCP port.
+ *
+ * <p>
+ * The protocol is line based: each newline-terminated command gets the same
+ * reply block the GUI shows, and {@code bye} closes the connection after its
+ * reply. Clients may pipeline: every command read so far is executed in order
+ * and their replies go back in a single write.
+ *
+ * <p>
+ * {@code begin} and {@code commit} are refused. A batch belongs to the whole
+ * executor, so one client's batch would stop journaling for every client.
+ * Batches also cannot be kept per connection: the journal addresses tasks by
+ * position, so one client's unjournaled edits would shift the positions in
+ * everyone else's records.
+ *
+ * <p>
+ * One selector thread does all socket I/O and a small pool runs commands, at
+ * most one batch per connection at a time so replies keep their order. An
+ * idle connection holds no buffer, only its key and a few fields, so
+ * thousands of them cost almost nothing. A connection whose replies are not
+ * being read stops being read from until it catches up.
+ */
+public class Server implements Closeable {
+    public static final int DEFAULT_PORT = 4545;
+    static final int MAX_LINE = 64 * 1024;
+    static final int MAX_UNSENT = 1 << 20;
+    static final String NO_BATCHES = "Batches are not available over the server; each command is saved as it runs.";
+
+    /** Per-connection state; everything but {@code partial} is guarded by the connection. */
+    private final class Conn {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final Queue<String> lines = new ArrayDeque<>();
+        final ArrayDeque<ByteBuffer> unsent = new ArrayDeque<>();
+        byte[] partial;
+        int partialLength;
+        int unsentBytes;
+        boolean isBusy;
+        boolean isInputDone;
+        boolean isClosing;
+
+        Conn(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+    }
+
+    private final CommandExecutor executor;
+    private final ServerSocketChannel listener;
+    private final Selector selector;
+    private final ExecutorService workers;
+    private final Queue<Conn> ready = new ConcurrentLinkedQueue<>();
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private final Thread loop;
+    private volatile boolean isClosed;
+    private volatile int connections;
+
+    /**
+     * Binds to {@code port} on the loopback address; port 0 picks a free one.
+     * Call {@link #start()} to begin serving.
+     */
+    public Server(CommandExecutor executor, int port) throws IOException {
+        assert executor != null : "Server needs an executor";
+        this.executor = executor;
+        this.selector = Selector.open();
+        this.listener = ServerSocketChannel.open();
+        listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        listener.configureBlocking(false);
+        listener.register(selector, SelectionKey.OP_ACCEPT);
+        this.workers = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), r -> {
+            Thread t = new Thread(r, "garfield-server-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.loop = new Thread(this::run, "garfield-server");
+    }
+
+    public int getPort() {
+        return listener.socket().getLocalPort();
+    }
+
+    /** Number of open client connections. */
+    public int getConnectionCount() {
+        return connections;
+    }
+
+    public void start() {
+        loop.start();
+    }
+
+    /** Blocks until the server has been closed. */
+    public void awaitClose() throws InterruptedException {
+        loop.join();
+    }
+
+    /**
+     * Stops accepting, drops every connection and waits for running commands
+     * to finish. The executor stays open; closing it is up to the caller.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        selector.wakeup();
+        if (!loop.isAlive()) {
+            try {
+                selector.close();
+                listener.close();
+            } catch (IOException e) {
+                System.err.println("Server close failed: " + e.getMessage());
+            }
+        } else if (Thread.currentThread() != loop) {
+            try {
+                loop.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (!isClosed) {
+                selector.select();
+                for (Conn c; (c = ready.poll()) != null; ) {
+                    flush(c);
+                }
+                for (SelectionKey key : selector.selectedKeys()) {
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                        continue;
+                    }
+                    Conn c = (Conn) key.attachment();
+                    if (key.isReadable()) {
+                        read(c);
+                    }
+                    if (key.isValid() && key.isWritable()) {
+                        flush(c);
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+        } catch (IOException e) {
+            System.err.println("Server stopped: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+                listener.close();
+            } catch (IOException e) {
+                System.err.println("Server close failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = listener.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            key.attach(new Conn(channel, key));
+            connections++;
+        }
+    }
+
+    /** Reads what is available and splits it into lines; only ever on the selector thread. */
+    private void read(Conn c) {
+        List<String> complete = new ArrayList<>();
+        boolean isEof = false;
+        try {
+            // One read per wake-up keeps a flooding client from starving the rest.
+            readBuffer.clear();
+            int n = c.channel.read(readBuffer);
+            isEof = n < 0;
+            readBuffer.flip();
+            if (n > 0 && !splitLines(c, complete)) {
+                // Overlong line: answer with an error and hang up.
+                complete.add(null);
+                c.partialLength = 0;
+                isEof = true;
+            }
+        } catch (IOException e) {
+            closeQuietly(c.key);
+            return;
+        }
+        if (isEof && c.partialLength > 0) {
+            complete.add(new String(c.partial, 0, c.partialLength, StandardCharsets.UTF_8));
+            c.partialLength = 0;
+        }
+        if (c.partialLength == 0) {
+            c.partial = null;
+        }
+        boolean shouldRun;
+        synchronized (c) {
+            if (!c.isClosing) {
+                c.lines.addAll(complete);
+            }
+            c.isInputDone |= isEof;
+            shouldRun = !c.isBusy && !c.lines.isEmpty();
+            c.isBusy |= shouldRun;
+        }
+        if (shouldRun) {
+            workers.execute(() -> drain(c));
+        }
+        updateInterest(c);
+    }
+
+    /**
+     * Moves every complete line in {@link #readBuffer} to {@code out} and keeps
+     * the rest in {@code c.partial}.
+     *
+     * @return false if a line is longer than {@link #MAX_LINE}
+     */
+    private boolean splitLines(Conn c, List<String> out) {
+        while (readBuffer.hasRemaining()) {
+            byte b = readBuffer.get();
+            if (b == '\n') {
+                int len = c.partialLength;
+                if (len > 0 && c.partial[len - 1] == '\r') {
+                    len--;
+                }
+                out.add(len == 0 ? "" : new String(c.partial, 0, len, StandardCharsets.UTF_8));
+                c.partialLength = 0;
+                continue;
+            }
+            if (c.partialLength == MAX_LINE) {
+                return false;
+            }
+            if (c.partial == null || c.partialLength == c.partial.length) {
+                int grown = Math.min(MAX_LINE, Math.max(128, c.partialLength * 2));
+                c.partial = c.partial == null ? new byte[grown] : Arrays.copyOf(c.partial, grown);
+            }
+            c.partial[c.partialLength++] = b;
+        }
+        return true;
+    }
+
+    /**
+     * Runs a connection's queued lines on a worker until none are left. Each
+     * round's replies are queued as one buffer for the selector to write.
+     */
+    private void drain(Conn c) {
+        while (true) {
+            List<String> batch;
+            synchronized (c) {
+                if (c.lines.isEmpty() || c.isClosing) {
+                    c.isBusy = false;
+                    break;
+                }
+                batch = new ArrayList<>(c.lines);
+                c.lines.clear();
+            }
+            StringBuilder reply = new StringBuilder();
+            boolean isBye = false;
+            for (String line : batch) {
+                if (line == null) {
+                    reply.append(ReplyFormat.formatError("That command is too long.")).append('\n');
+                    isBye = true;
+                    break;
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                try {
+                    Parser.Parsed p = Parser.parse(line);
+                    if (p.type == Parser.CommandType.BEGIN || p.type == Parser.CommandType.COMMIT) {
+                        throw new GarfieldException(NO_BATCHES);
+                    }
+                    CommandResult r = executor.execute(p);
+                    reply.append(ReplyFormat.format(r)).append('\n');
+                    if (r.kind == CommandResult.Kind.BYE) {
+                        isBye = true;
+                        break;
+                    }
+                } catch (GarfieldException e) {
+                    reply.append(ReplyFormat.formatError(e.getMessage())).append('\n');
+                } catch (RuntimeException e) {
+                    reply.append(ReplyFormat.formatError("Something went wrong: " + e)).append('\n');
+                }
+            }
+            byte[] bytes = reply.toString().getBytes(StandardCharsets.UTF_8);
+            synchronized (c) {
+                if (bytes.length > 0) {
+                    c.unsent.add(ByteBuffer.wrap(bytes));
+                    c.unsentBytes += bytes.length;
+                }
+                if (isBye) {
+                    c.isClosing = true;
+                    c.lines.clear();
+                }
+            }
+            wake(c);
+        }
+        wake(c);
+    }
+
+    /** Hands {@code c} back to the selector thread to write or close it. */
+    private void wake(Conn c) {
+        ready.add(c);
+        selector.wakeup();
+    }
+
+    /** Writes as much queued reply data as the socket takes; only ever on the selector thread. */
+    private void flush(Conn c) {
+        if (!c.key.isValid()) {
+            return;
+        }
+        try {
+            synchronized (c) {
+                while (!c.unsent.isEmpty()) {
+                    ByteBuffer head = c.unsent.peek();
+                    c.unsentBytes -= c.channel.write(head);
+                    if (head.hasRemaining()) {
+                        break;
+                    }
+                    c.unsent.poll();
+                }
+            }
+        } catch (IOException e) {
+            closeQuietly(c.key);
+            return;
+        }
+        updateInterest(c);
+    }
+
+    /**
+     * Reads only while the client is keeping up with replies, writes only
+     * while something is queued, and closes once a finished connection has
+     * nothing left to send.
+     */
+    private void updateInterest(Conn c) {
+        if (!c.key.isValid()) {
+            return;
+        }
+        synchronized (c) {
+            boolean isIdle = !c.isBusy && c.lines.isEmpty() && c.unsent.isEmpty();
+            if ((c.isClosing || c.isInputDone) && isIdle) {
+                closeQuietly(c.key);
+                return;
+            }
+            int ops = 0;
+            if (!c.isInputDone && !c.isClosing && c.unsentBytes < MAX_UNSENT) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!c.unsent.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            c.key.interestOps(ops);
+        }
+    }
+
+    private void closeQuietly(SelectionKey key) {
+        if (key.attachment() instanceof Conn && key.isValid()) {
+            connections--;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // Nothing left to tell the client.
+        }
+    }
+}
@@ -7,9 +7,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Deadline extends Task {
-    protected String by;
-    private LocalDate date;
-    private LocalDateTime dateTime;
+    protected volatile String by;
+    private volatile LocalDate date;
+    private volatile LocalDateTime dateTime;
+    private volatile String display;
 
     public Deadline(String description, String by) {
         super(description);
@@ -18,31 +19,58 @@ public class Deadline extends Task {
         setBy(by);
     }
 
+    /**
+     * Creates a deadline whose {@code by} text has already been parsed, e.g. when
+     * restoring from a binary snapshot. At most one of the parsed values may be
+     * non-null.
+     */
+    public Deadline(String description, String by, LocalDateTime dateTime, LocalDate date) {
+        super(description);
+        assert by != null : "Deadline 'by' must not be null";
+        assert dateTime == null || date == null : "Deadline has either a date-time or a date";
+        this.by = by;
+        this.dateTime = dateTime;
+        this.date = date;
+        this.display = display();
+    }
+
     public void setBy(String by) {
         this.by = by;
         this.dateTime = Dates.tryParseDateTime(by);
         this.date = (this.dateTime == null) ? Dates.tryParseDate(by) : null;
+        this.display = display();
+        invalidate();
     }
 
     public String getBy() {
         return by;
     }
 
+    public LocalDateTime getDateTime() {
+        return dateTime;
+    }
+
+    public LocalDate getDate() {
+        return date;
+    }
+
     @Override
     protected TaskType getType() {
         return TaskType.DEADLINE;
     }
 
-    @Override
-    public String toString() {
-        String display;
+    private String display() {
         if (dateTime != null) {
-            display = Dates.format(dateTime);
+            return Dates.format(dateTime);
         } else if (date != null) {
-            display = Dates.format(date);
+            return Dates.format(date);
         } else {
-            display = by;
+            return by;
         }
-        return super.toString() + " (by: " + display + ")";
+    }
+
+    @Override
+    protected String render() {
+        return super.render() + " (by: " + display + ")";
     }
 }
\ No newline at end of file
@@ -7,11 +7,13 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 public class Event extends Task {
-    protected String from;
-    protected String to;
+    protected volatile String from;
+    protected volatile String to;
 
-    private LocalDateTime fromDt, toDt;
-    private LocalDate fromDate, toDate;
+    private volatile LocalDateTime fromDt, toDt;
+    private volatile LocalDate fromDate, toDate;
+    /** Rendered schedule, kept in one field so a reader never sees half a snooze. */
+    private volatile String schedule;
 
     public Event(String description, String from, String to) {
         super(description);
@@ -21,6 +23,24 @@ public class Event extends Task {
         assertNonDecreasing();
     }
 
+    /**
+     * Creates an event whose times have already been parsed, e.g. when restoring
+     * from a binary snapshot. For each side at most one parsed value may be
+     * non-null.
+     */
+    public Event(String description, String from, String to,
+            LocalDateTime fromDt, LocalDate fromDate, LocalDateTime toDt, LocalDate toDate) {
+        super(description);
+        assert from != null && to != null : "Event times must not be null";
+        this.from = from;
+        this.to = to;
+        this.fromDt = fromDt;
+        this.fromDate = fromDate;
+        this.toDt = toDt;
+        this.toDate = toDate;
+        this.schedule = schedule();
+    }
+
     public void setSchedule(String from, String to) {
         this.from = from;
         this.to = to;
@@ -31,6 +51,9 @@ public class Event extends Task {
         this.fromDate = (fromDt == null) ? Dates.tryParseDate(from) : null;
         this.toDate = (toDt == null) ? Dates.tryParseDate(to) : null;
 
+        this.schedule = schedule();
+        invalidate();
+
         assertNonDecreasing();
     }
 
@@ -56,19 +79,39 @@ public class Event extends Task {
         return to;
     }
 
+    public LocalDateTime getFromDateTime() {
+        return fromDt;
+    }
+
+    public LocalDate getFromDate() {
+        return fromDate;
+    }
+
+    public LocalDateTime getToDateTime() {
+        return toDt;
+    }
+
+    public LocalDate getToDate() {
+        return toDate;
+    }
+
     @Override
     protected TaskType getType() {
         return TaskType.EVENT;
     }
 
+    private String schedule() {
+        return " (from: " + display(fromDt, fromDate, from) + " to: " + display(toDt, toDate, to) + ")";
+    }
+
+    private static String display(LocalDateTime dt, LocalDate d, String raw) {
+        return (dt != null) ? Dates.format(dt)
+                : (d != null) ? Dates.format(d)
+                        : raw;
+    }
+
     @Override
-    public String toString() {
-        String fromDisp = (fromDt != null) ? Dates.format(fromDt)
-                : (fromDate != null) ? Dates.format(fromDate)
-                        : from;
-        String toDisp = (toDt != null) ? Dates.format(toDt)
-                : (toDate != null) ? Dates.format(toDate)
-                        : to;
-        return super.toString() + " (from: " + fromDisp + " to: " + toDisp + ")";
+    protected String render() {
+        return super.render() + schedule;
     }
 }
\ No newline at end of file
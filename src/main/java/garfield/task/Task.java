@@ -1,25 +1,95 @@
 // Credit to Tsay Yong for code inspiration.
 package garfield.task;
 
+import java.util.Locale;
+
+/**
+ * Base class of all tasks.
+ *
+ * <p>
+ * The rendered form returned by {@link #toString()} is cached and only rebuilt
+ * after a mutation calls {@link #invalidate()}. The lowercase search key never
+ * changes because descriptions are immutable.
+ *
+ * <p>
+ * Mutators must run one at a time ({@code TaskList} serializes them) but may
+ * race with readers on other threads. Each mutation ends by bumping a volatile
+ * stamp, and a cached rendering is only reused while its stamp is current, so
+ * a reader that rendered mid-mutation can never pin a stale string.
+ *
+ * <p>
+ * The same stamp doubles as a version for incremental saves: a task is dirty
+ * until {@link #markSaved(int)} is called with the version it was written at.
+ * New tasks start dirty.
+ */
 public abstract class Task {
     protected final String description;
-    protected boolean isDone;
+    protected volatile boolean isDone;
+    private volatile long id;
+
+    /** A rendering and the stamp it was made at. */
+    private static final class Rendered {
+        final int stamp;
+        final String text;
+
+        Rendered(int stamp, String text) {
+            this.stamp = stamp;
+            this.text = text;
+        }
+    }
+
+    private volatile int stamp;
+    private volatile int savedStamp;
+    private volatile Rendered rendered;
+    private String searchKey;
 
     public Task(String description) {
         assert description != null : "Task description must not be null";
         assert !description.trim().isEmpty() : "Task description must not be empty";
         this.description = description;
         this.isDone = false;
+        invalidate();
     }
 
     public void markAsDone() {
         assert !isDone : "markAsDone should not be called if already done";
         this.isDone = true;
+        invalidate();
     }
 
     public void markAsNotDone() {
         assert isDone : "markAsNotDone should not be called if already not done";
         this.isDone = false;
+        invalidate();
+    }
+
+    /** Stable id that survives deletes of other tasks, or 0 if not yet assigned. */
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        assert id > 0 : "Task ids are positive";
+        this.id = id;
+        invalidate();
+    }
+
+    /** Changes every time the task does; read it before serializing the task. */
+    public int getVersion() {
+        return stamp;
+    }
+
+    /** Whether the task changed since it was last saved. */
+    public boolean isDirty() {
+        return savedStamp != stamp;
+    }
+
+    /**
+     * Records that the task was saved as of {@code version}. A mutation made
+     * after that version was read keeps the task dirty.
+     */
+    public void markSaved(int version) {
+        savedStamp = version;
     }
 
     public String getStatusIcon() {
@@ -36,12 +106,39 @@ public abstract class Task {
         return isDone;
     }
 
+    /** Lowercase description used by keyword search. */
+    public String getSearchKey() {
+        String k = searchKey;
+        if (k == null) {
+            k = description.toLowerCase(Locale.ROOT);
+            searchKey = k;
+        }
+        return k;
+    }
+
     public String pretty() {
-        return String.format("[%s][%s] %s", getType().symbol(), getStatusIcon(), description);
+        return "[" + getType().symbol() + "][" + getStatusIcon() + "] " + description;
     }
 
-    @Override
-    public String toString() {
+    /** Builds the display string; subclasses append their schedule. */
+    protected String render() {
         return pretty();
     }
+
+    /** Marks the cached display string stale and the task dirty; call last in every mutation. */
+    protected void invalidate() {
+        stamp++;
+    }
+
+    @Override
+    public final String toString() {
+        int s = stamp;
+        Rendered r = rendered;
+        if (r != null && r.stamp == s) {
+            return r.text;
+        }
+        String text = render();
+        rendered = new Rendered(s, text);
+        return text;
+    }
 }
\ No newline at end of file
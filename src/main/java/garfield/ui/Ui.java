@@ -4,20 +4,37 @@ package garfield.ui;
 import static garfield.util.Constants.LINE;
 
 import java.util.List;
+import garfield.core.Page;
+import garfield.task.Event;
 import garfield.task.Task;
 
+import java.io.BufferedWriter;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.util.Scanner;
 
+/**
+ * Console front end.
+ *
+ * <p>
+ * Output goes through one buffered writer that is flushed after every block,
+ * and every {@link #STREAM_CHUNK} lines while a long list is being written, so
+ * listing a large task list never materializes the whole reply in memory.
+ */
 public class Ui {
+    static final int STREAM_CHUNK = 1024;
 
     private final Scanner sc = new Scanner(System.in);
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
 
-    private void block(String... lines) {
-        System.out.println(LINE);
+    private synchronized void block(String... lines) {
+        out.println(LINE);
         for (String s : lines) {
-            System.out.println(" " + s);
+            out.print(' ');
+            out.println(s);
         }
-        System.out.println(LINE);
+        out.println(LINE);
+        out.flush();
     }
 
     public void showWelcome() {
@@ -48,17 +65,80 @@ public class Ui {
         block("OK, I've marked this task as not done yet:", "  " + t);
     }
 
+    public void showSnoozed(Task t) {
+        block("Rescheduled this task:", "  " + t);
+    }
+
+    public void showScheduled(String label, List<Task> matches) {
+        if (matches.isEmpty()) {
+            block("No tasks " + label + ".");
+            return;
+        }
+        String[] lines = new String[matches.size() + 1];
+        lines[0] = "Here are the tasks " + label + ":";
+        for (int i = 0; i < matches.size(); i++) {
+            lines[i + 1] = (i + 1) + "." + matches.get(i);
+        }
+        block(lines);
+    }
+
+    /** Safe to call from the reminder thread while the loop is printing. */
+    public void showReminder(Task t) {
+        block(t instanceof Event ? "Reminder! This is starting now:" : "Reminder! This is due now:", "  " + t);
+    }
+
+    public void showBegun() {
+        block("Batch started. Changes will be saved on commit.");
+    }
+
+    public void showCommitted(int changes) {
+        block(String.format("Batch committed: %d changes saved.", changes));
+    }
+
+    public void showStats(String summary, int count) {
+        block(String.format("You have %d tasks in the list.", count), summary);
+    }
+
+    public void showBatchSummary(int applied, int failed) {
+        block(String.format("Batch done: %d commands applied, %d failed.", applied, failed));
+    }
+
+    /**
+     * Streams every task, numbered from 1.
+     */
     public void showList(List<Task> tasks) {
+        streamList(tasks, 0, tasks.size(), null);
+    }
+
+    /**
+     * Streams one page of tasks, numbered by their position in the full list.
+     */
+    public void showList(List<Task> tasks, Page page) {
+        streamList(tasks, page.from, page.to, page.isPartial() ? page.footer() : null);
+    }
+
+    private synchronized void streamList(List<Task> tasks, int from, int to, String footer) {
         if (tasks.isEmpty()) {
             block("(no tasks yet)");
             return;
         }
-        String[] lines = new String[tasks.size() + 1];
-        lines[0] = "Here are the tasks in your list:";
-        for (int i = 0; i < tasks.size(); i++) {
-            lines[i + 1] = (i + 1) + "." + tasks.get(i);
+        out.println(LINE);
+        out.println(" Here are the tasks in your list:");
+        for (int i = from; i < to; i++) {
+            out.print(' ');
+            out.print(i + 1);
+            out.print('.');
+            out.println(tasks.get(i));
+            if ((i - from + 1) % STREAM_CHUNK == 0) {
+                out.flush();
+            }
         }
-        block(lines);
+        if (footer != null) {
+            out.print(' ');
+            out.println(footer);
+        }
+        out.println(LINE);
+        out.flush();
     }
 
     public void showFindResults(List<Task> matches) {
@@ -0,0 +1,112 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import garfield.io.Storage;
+import garfield.parser.Parser;
+import garfield.task.Task;
+
+public class CommandExecutorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void batch_rejectsNestedBeginAndStrayCommit() throws Exception {
+        CommandExecutor executor = CommandExecutor.open(tempDir.resolve("garfield.jsonl"));
+        GarfieldException stray = assertThrows(GarfieldException.class, () -> run(executor, "commit"));
+        assertEquals("No batch is open. Use: begin", stray.getMessage());
+
+        run(executor, "begin");
+        run(executor, "todo read book");
+        GarfieldException nested = assertThrows(GarfieldException.class, () -> run(executor, "begin"));
+        assertEquals("A batch is already open. Use: commit", nested.getMessage());
+        assertTrue(executor.isInBatch());
+
+        // The failed begin leaves the open batch and its count alone.
+        assertEquals(1, run(executor, "commit").changes);
+        assertFalse(executor.isInBatch());
+        executor.close();
+    }
+
+    @Test
+    void commit_savesSnapshotAndLaterChangesGoToJournal() throws Exception {
+        Path file = tempDir.resolve("garfield.jsonl");
+        Path journal = tempDir.resolve("garfield.jsonl.journal");
+        CommandExecutor executor = CommandExecutor.open(file);
+        run(executor, "begin");
+        run(executor, "todo read book");
+        run(executor, "deadline return book /by 2019-12-02");
+        run(executor, "mark 1");
+        assertEquals(0, journalRecords(journal));
+
+        assertEquals(3, run(executor, "commit").changes);
+        assertEquals(0, journalRecords(journal));
+        List<Task> saved = new Storage(file).load();
+        assertEquals(2, saved.size());
+        assertTrue(saved.get(0).isDone());
+
+        run(executor, "todo throw away");
+        executor.close();
+        assertEquals(1, journalRecords(journal));
+        assertEquals(3, new Storage(file).load().size());
+    }
+
+    @Test
+    void bye_commitsOpenBatch() throws Exception {
+        Path file = tempDir.resolve("garfield.jsonl");
+        CommandExecutor executor = CommandExecutor.open(file);
+        run(executor, "begin");
+        run(executor, "todo read book");
+        assertEquals(CommandResult.Kind.BYE, run(executor, "bye").kind);
+        assertFalse(executor.isInBatch());
+        assertEquals(1, new Storage(file).load().size());
+        executor.close();
+    }
+
+    @Test
+    void runBatch_reportsFailingLinesAndAppliesTheRest() throws Exception {
+        Path file = tempDir.resolve("garfield.jsonl");
+        Path script = tempDir.resolve("script.txt");
+        Files.writeString(script, String.join("\n",
+                "# set up",
+                "todo read book",
+                "mark 9",
+                "",
+                "bogus",
+                "deadline return book /by 2019-12-02",
+                "mark 2"), StandardCharsets.UTF_8);
+
+        assertEquals(2, new Garfield(file).runBatch(script));
+
+        List<Task> saved = new Storage(file).load();
+        assertEquals(2, saved.size());
+        assertEquals("return book", saved.get(1).getDescription());
+        assertTrue(saved.get(1).isDone());
+    }
+
+    private static CommandResult run(CommandExecutor executor, String line) throws GarfieldException {
+        return executor.execute(Parser.parse(line));
+    }
+
+    private static long journalRecords(Path journal) throws Exception {
+        if (!Files.exists(journal)) {
+            return 0;
+        }
+        return Files.readAllLines(journal, StandardCharsets.UTF_8).stream()
+                .filter(l -> l.contains("\"op\":"))
+                .count();
+    }
+}
@@ -0,0 +1,103 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class DatesTest {
+    private static final DateTimeFormatter[] DT_INPUTS = new DateTimeFormatter[] {
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HHmm"),
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+    };
+
+    @Test
+    void parse_agreesWithFormattersOnEdgeCases() {
+        List<String> inputs = new ArrayList<>(List.of(
+                "2019-02-30", "2019-02-29", "2020-02-29", "2019-04-31", "2019-13-01", "2019-00-10", "0000-01-01",
+                "2019-02-30 1400", "2019-02-29 14:00", "2019-12-02 2400", "2019-12-02 24:00", "2019-12-02 2360",
+                "2019-12-02 1400", "2019-12-02 14:00", "2019-12-02 14:0", "2019-12-02 1:00", "2019-12-02T14:00",
+                "2019-12-2", "+2019-12-02", "12019-12-02", "2019-12-02 1400 "));
+        for (int month = 1; month <= 12; month++) {
+            for (int day = 27; day <= 32; day++) {
+                String date = String.format("2019-%02d-%02d", month, day);
+                inputs.add(date);
+                inputs.add(date + " 2359");
+                inputs.add(date + " 00:00");
+            }
+        }
+        for (String s : inputs) {
+            assertEquals(reference(s), parsed(s));
+        }
+    }
+
+    @Test
+    void parse_hoursAndSeparators() {
+        assertEquals(LocalDateTime.of(2019, 12, 2, 14, 0), Dates.tryParseDateTime("2019-12-02 1400"));
+        assertEquals(LocalDateTime.of(2019, 12, 2, 14, 0), Dates.tryParseDateTime("2019-12-02 14:00"));
+        // The formatters read 24:00 as midnight of the next day.
+        assertEquals(LocalDateTime.of(2019, 12, 3, 0, 0), Dates.tryParseDateTime("2019-12-02 2400"));
+        assertEquals(null, Dates.tryParseDateTime("2019-12-02 2401"));
+        assertEquals(null, Dates.tryParseDate("2019-02-30"));
+        assertEquals(LocalDate.of(2020, 2, 29), Dates.tryParseDate("2020-02-29"));
+        assertEquals(null, Dates.tryParseDate("2019-12-02 1400"));
+    }
+
+    @Test
+    void parse_leavesFreeTextAlone() {
+        for (String s : List.of("", "tomorrow", "Sunday 2pm", "next week please", "2019/12/02", "Dec 2 2019",
+                "2019-12-02 or so", "-----------", "1234567890")) {
+            assertEquals(null, Dates.tryParseDate(s));
+            assertEquals(null, Dates.tryParseDateTime(s));
+        }
+        assertEquals(null, Dates.tryParseDate(null));
+    }
+
+    @Test
+    void cachedResults_matchFirstParse() {
+        List<String> slow = List.of("2019-02-30 1400", "2019-12-02 2400", "2019-12-2", "2019-12-02 or so");
+        List<Object> first = new ArrayList<>();
+        for (String s : slow) {
+            first.add(parsed(s));
+        }
+        for (int i = 0; i < slow.size(); i++) {
+            assertEquals(first.get(i), parsed(slow.get(i)));
+        }
+        // Push the entries out of the cache; a fresh miss must give the same answers.
+        for (int i = 0; i < Dates.CACHE_SIZE * 2; i++) {
+            Dates.tryParseDate("2019-12-" + i + " x");
+        }
+        for (int i = 0; i < slow.size(); i++) {
+            assertEquals(first.get(i), parsed(slow.get(i)));
+            assertEquals(reference(slow.get(i)), parsed(slow.get(i)));
+        }
+    }
+
+    /** What {@link Dates} answers for {@code s}: a date-time, else a date, else {@code null}. */
+    private static Object parsed(String s) {
+        LocalDateTime dt = Dates.tryParseDateTime(s);
+        return dt != null ? dt : Dates.tryParseDate(s);
+    }
+
+    /** The formatter-only parse that {@link Dates} must agree with. */
+    private static Object reference(String s) {
+        for (DateTimeFormatter f : DT_INPUTS) {
+            try {
+                return LocalDateTime.parse(s, f);
+            } catch (DateTimeParseException ignore) {
+            }
+        }
+        try {
+            return LocalDate.parse(s, DateTimeFormatter.ISO_LOCAL_DATE);
+        } catch (DateTimeParseException ignore) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import garfield.parser.Parser;
+import garfield.task.Task;
+
+public class ReminderSchedulerTest {
+    /** Noon on 2019-12-02, UTC. */
+    private static final Instant START = Instant.parse("2019-12-02T12:00:00Z");
+
+    @TempDir
+    Path tempDir;
+
+    /** A clock that only moves when told to. */
+    private static final class MutableClock extends Clock {
+        private volatile Instant now = START;
+
+        void advance(Duration d) {
+            now = now.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    private final MutableClock clock = new MutableClock();
+    private final BlockingQueue<Task> fired = new LinkedBlockingQueue<>();
+
+    @Test
+    void dueReminders_fireInTimeOrder() throws Exception {
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        TaskList list = new TaskList();
+        list.addDeadline("third", "2019-12-02 1500");
+        list.addDeadline("first", "2019-12-02 1300");
+        list.addEvent("second", "2019-12-02 1400", "2019-12-02 1600");
+        list.addDeadline("tomorrow", "2019-12-03");
+        scheduler.scheduleAll(list.asList());
+        assertEquals(4, scheduler.size());
+
+        advance(scheduler, Duration.ofHours(4));
+        assertEquals(List.of("first", "second", "third"), take(3));
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.size());
+        scheduler.close();
+    }
+
+    @Test
+    void snooze_rekeysTheReminder() throws Exception {
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        TaskList list = new TaskList();
+        Task t = list.addDeadline("report", "2019-12-02 1300");
+        scheduler.scheduleAll(list.asList());
+        list.snoozeDeadline(1, "2019-12-02 1500");
+        scheduler.schedule(t);
+
+        advance(scheduler, Duration.ofHours(2));
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.size());
+        advance(scheduler, Duration.ofHours(2));
+        assertEquals(List.of("report"), take(1));
+        // The entry for the old time was dropped, not fired late.
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        scheduler.close();
+    }
+
+    @Test
+    void markAndDelete_cancelReminders() throws Exception {
+        CommandExecutor executor = CommandExecutor.open(tempDir.resolve("garfield.jsonl"));
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        executor.execute(Parser.parse("deadline marked /by 2019-12-02 1300"));
+        executor.setReminders(scheduler);
+        executor.execute(Parser.parse("deadline deleted /by 2019-12-02 1300"));
+        executor.execute(Parser.parse("event kept /from 2019-12-02 1400 /to 2019-12-02 1500"));
+        assertEquals(3, scheduler.size());
+        executor.execute(Parser.parse("mark 1"));
+        executor.execute(Parser.parse("delete 2"));
+        assertEquals(1, scheduler.size());
+
+        advance(scheduler, Duration.ofHours(3));
+        assertEquals(List.of("kept"), take(1));
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        executor.close();
+    }
+
+    @Test
+    void pastAndDoneTasks_neverFire() throws Exception {
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        TaskList list = new TaskList();
+        list.addDeadline("an hour ago", "2019-12-02 1100");
+        list.addDeadline("right now", "2019-12-02 1200");
+        list.addEvent("started today", "2019-12-02", "2019-12-03");
+        list.addDeadline("whenever", "after lunch");
+        list.addTodo("no date");
+        list.addDeadline("done already", "2019-12-02 1300");
+        list.mark(6);
+        scheduler.scheduleAll(list.asList());
+        assertEquals(0, scheduler.size());
+
+        advance(scheduler, Duration.ofDays(2));
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        scheduler.close();
+    }
+
+    @Test
+    void dateOnlyDeadline_firesAtEndOfDay() throws Exception {
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        TaskList list = new TaskList();
+        list.addDeadline("today", "2019-12-02");
+        scheduler.scheduleAll(list.asList());
+        assertEquals(1, scheduler.size());
+
+        advance(scheduler, Duration.ofHours(11));
+        assertEquals(null, fired.poll(100, TimeUnit.MILLISECONDS));
+        advance(scheduler, Duration.ofHours(1));
+        assertEquals(List.of("today"), take(1));
+        scheduler.close();
+    }
+
+    @Test
+    void close_stopsFurtherReminders() throws Exception {
+        ReminderScheduler scheduler = new ReminderScheduler(fired::add, clock);
+        TaskList list = new TaskList();
+        list.addDeadline("soon", "2019-12-02 1300");
+        scheduler.scheduleAll(list.asList());
+        scheduler.close();
+
+        advance(scheduler, Duration.ofHours(2));
+        scheduler.schedule(list.addDeadline("after close", "2019-12-02 1500"));
+        advance(scheduler, Duration.ofHours(2));
+        assertEquals(null, fired.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    private void advance(ReminderScheduler scheduler, Duration d) {
+        clock.advance(d);
+        scheduler.wake();
+    }
+
+    /** Descriptions of the next {@code n} reminders, waiting a few seconds at most. */
+    private List<String> take(int n) throws InterruptedException {
+        List<String> out = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Task t = fired.poll(5, TimeUnit.SECONDS);
+            out.add(t == null ? null : t.getDescription());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,77 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import garfield.task.Task;
+import garfield.task.Todo;
+
+public class SearchIndexTest {
+
+    @Test
+    void shortKeywords_scanAllKeys() {
+        SearchIndex index = new SearchIndex();
+        List<Task> tasks = add(index, "read book", "Buy bread", "x");
+
+        assertEquals(List.of(tasks.get(0), tasks.get(1)), index.find("b"));
+        assertEquals(List.of(tasks.get(0), tasks.get(1)), index.find("re"));
+        assertEquals(List.of(tasks.get(2)), index.find("x"));
+        assertEquals(List.of(), index.find("zz"));
+    }
+
+    @Test
+    void keywords_matchAcrossWordsAndCase() {
+        SearchIndex index = new SearchIndex();
+        List<Task> tasks = add(index, "Read BOOK", "reading books", "\u00dcber CAF\u00c9", "\u00c7A VA");
+
+        assertEquals(List.of(tasks.get(0)), index.find("d bo"));
+        assertEquals(List.of(tasks.get(0), tasks.get(1)), index.find("book"));
+        assertEquals(List.of(tasks.get(1)), index.find("ding books"));
+        assertEquals(List.of(tasks.get(2)), index.find("\u00fcber caf\u00e9"));
+        assertEquals(List.of(tasks.get(3)), index.find("\u00e7a"));
+        // Upper-case keywords never match: find expects them lowercased already.
+        assertEquals(List.of(), index.find("BOOK"));
+    }
+
+    @Test
+    void find_afterDeletesRebuildTheIndex() {
+        SearchIndex index = new SearchIndex();
+        List<String> descs = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            descs.add((i % 2 == 0 ? "even task " : "odd task ") + i);
+        }
+        List<Task> tasks = add(index, descs.toArray(new String[0]));
+        // Past 1024 tombstones that outnumber live entries, the index rebuilds itself.
+        for (int i = 0; i < 2500; i++) {
+            index.remove(tasks.get(i));
+        }
+        index.remove(tasks.get(0));
+        Task added = new Todo("even task new");
+        index.add(added);
+
+        List<Task> expected = new ArrayList<>();
+        for (int i = 2500; i < 3000; i += 2) {
+            expected.add(tasks.get(i));
+        }
+        expected.add(added);
+        assertEquals(expected, index.find("even task"));
+        assertEquals(List.of(tasks.get(2999)), index.find("2999"));
+        assertEquals(List.of(), index.find("task 24"));
+        assertEquals(251, index.find("e").size());
+    }
+
+    private static List<Task> add(SearchIndex index, String... descs) {
+        List<Task> out = new ArrayList<>();
+        for (String d : descs) {
+            Task t = new Todo(d);
+            index.add(t);
+            out.add(t);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,231 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+import garfield.task.Task;
+
+public class TaskListTest {
+    private static final int TASKS = 20_000;
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+
+    @Test
+    void concurrentDeletes_removeEachTaskExactlyOnce() throws Exception {
+        TaskList list = new TaskList();
+        for (int i = 0; i < TASKS; i++) {
+            list.addTodo("item " + i);
+        }
+        List<Task> all = new ArrayList<>(list.asList());
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<List<Task>>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            writers.add(pool.submit(() -> {
+                start.await();
+                List<Task> removed = new ArrayList<>();
+                while (true) {
+                    try {
+                        removed.add(list.delete(1));
+                    } catch (GarfieldException e) {
+                        return removed;
+                    }
+                }
+            }));
+        }
+        List<Future<Integer>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                int snapshots = 0;
+                int lastSize = Integer.MAX_VALUE;
+                while (writing.get()) {
+                    List<Task> snapshot = list.asList();
+                    // Deletes only ever remove from the front, so every snapshot
+                    // is a suffix of the original list with ids still ascending.
+                    int size = 0;
+                    long lastId = 0;
+                    for (Task t : snapshot) {
+                        assertTrue(t.getId() > lastId, "ids out of order in a snapshot");
+                        lastId = t.getId();
+                        size++;
+                    }
+                    assertEquals(snapshot.size(), size);
+                    assertTrue(size <= lastSize, "a later snapshot grew");
+                    lastSize = size;
+                    assertTrue(list.find("item 1").size() <= TASKS);
+                    snapshots++;
+                }
+                return snapshots;
+            }));
+        }
+
+        start.countDown();
+        Map<Task, Boolean> seen = new IdentityHashMap<>();
+        int total = 0;
+        for (Future<List<Task>> f : writers) {
+            for (Task t : f.get(60, TimeUnit.SECONDS)) {
+                assertTrue(seen.put(t, Boolean.TRUE) == null, "task deleted twice");
+                total++;
+            }
+        }
+        writing.set(false);
+        for (Future<Integer> f : readers) {
+            assertTrue(f.get(60, TimeUnit.SECONDS) > 0);
+        }
+        pool.shutdown();
+
+        assertEquals(TASKS, total);
+        assertEquals(0, list.size());
+        for (Task t : all) {
+            assertTrue(seen.containsKey(t));
+            assertEquals(null, list.getById(t.getId()));
+        }
+    }
+
+    @Test
+    void concurrentMarks_areVisibleToReaders() throws Exception {
+        TaskList list = new TaskList();
+        for (int i = 0; i < TASKS; i++) {
+            list.addTodo("item " + i);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(WRITERS + READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean writing = new AtomicBoolean(true);
+        List<Future<List<Integer>>> writers = new ArrayList<>();
+        for (int w = 0; w < WRITERS; w++) {
+            writers.add(pool.submit(() -> {
+                start.await();
+                List<Integer> marked = new ArrayList<>();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < TASKS / WRITERS; i++) {
+                    int idx1 = 1 + rnd.nextInt(TASKS);
+                    Task t = list.mark(idx1);
+                    assertTrue(t.isDone());
+                    marked.add(idx1);
+                }
+                return marked;
+            }));
+        }
+        List<Future<?>> readers = new ArrayList<>();
+        for (int r = 0; r < READERS; r++) {
+            readers.add(pool.submit(() -> {
+                start.await();
+                while (writing.get()) {
+                    for (Task t : list.asList()) {
+                        // Rendering races with marking but must never throw.
+                        assertTrue(t.toString().startsWith("[T]["));
+                    }
+                }
+                return null;
+            }));
+        }
+
+        start.countDown();
+        List<Integer> marked = new ArrayList<>();
+        for (Future<List<Integer>> f : writers) {
+            marked.addAll(f.get(60, TimeUnit.SECONDS));
+        }
+        writing.set(false);
+        for (Future<?> f : readers) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        pool.shutdown();
+
+        List<Task> snapshot = list.asList();
+        for (int idx1 : marked) {
+            assertTrue(snapshot.get(idx1 - 1).isDone());
+        }
+        int done = 0;
+        for (Task t : snapshot) {
+            // Once writers stop, no reader may have pinned a stale rendering.
+            assertEquals(t.isDone(), t.toString().startsWith("[T][X]"));
+            done += t.isDone() ? 1 : 0;
+        }
+        assertEquals(marked.stream().distinct().count(), (long) done);
+    }
+
+    @Test
+    void compactList_answersLikeAnOrdinaryOne() throws Exception {
+        TaskList eager = new TaskList();
+        for (int i = 0; i < 300; i++) {
+            switch (i % 3) {
+                case 0 -> eager.addTodo("read book " + i);
+                case 1 -> eager.addDeadline("return book " + i, "2019-12-02");
+                default -> eager.addEvent("meet boss " + i, "2019-12-02 1400", "2019-12-02 1500");
+            }
+        }
+        TaskList compact = TaskList.compact(eager.asList());
+        for (TaskList list : List.of(eager, compact)) {
+            list.delete(2);
+            list.mark(5);
+            list.snoozeDeadline(7, "2019-12-09");
+            list.snoozeEvent(5, "2019-12-09 0900", "2019-12-09 1000");
+            list.addTodo("read caf\u00e9 menu");
+        }
+
+        assertEquals(render(eager.asList()), render(compact.asList()));
+        assertEquals(render(eager.find("book 1")), render(compact.find("book 1")));
+        assertEquals(render(eager.find("CAF\u00c9")), render(compact.find("CAF\u00c9")));
+        assertEquals(1, compact.find("CAF\u00c9").size());
+        LocalDate day = LocalDate.of(2019, 12, 9);
+        assertEquals(render(eager.dueOn(day)), render(compact.dueOn(day)));
+        assertEquals(2, compact.dueOn(day).size());
+        LocalDateTime now = LocalDateTime.of(2019, 12, 5, 0, 0);
+        assertEquals(render(eager.overdue(now)), render(compact.overdue(now)));
+        assertEquals(eager.getById(6).toString(), compact.getById(6).toString());
+        // A view handed out stays the task the list changes while it is held.
+        Task held = compact.asList().get(0);
+        compact.mark(1);
+        assertTrue(held.isDone());
+    }
+
+    @Test
+    void changedIds_onlyRecordEditsThatHappened() throws Exception {
+        TaskList list = new TaskList();
+        Task todo = list.addTodo("read book");
+        Task deadline = list.addDeadline("return book", "2019-12-02");
+        list.drainChangedIds();
+
+        list.unmark(1);
+        assertThrows(GarfieldException.class, () -> list.snoozeEvent(2, "2019-12-09 0900", "2019-12-09 1000"));
+        assertThrows(GarfieldException.class, () -> list.mark(3));
+        assertArrayEquals(new long[0], list.drainChangedIds());
+
+        list.mark(1);
+        list.mark(1);
+        assertArrayEquals(new long[] {todo.getId()}, list.drainChangedIds());
+        list.snoozeDeadline(2, "2019-12-09");
+        assertArrayEquals(new long[] {deadline.getId()}, list.drainChangedIds());
+    }
+
+    private static List<String> render(List<Task> tasks) {
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks) {
+            out.add(t.toString());
+        }
+        return out;
+    }
+}
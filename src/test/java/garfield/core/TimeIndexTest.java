@@ -0,0 +1,121 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import garfield.task.Task;
+
+public class TimeIndexTest {
+    private static final LocalDate DAY = LocalDate.of(2019, 12, 2);
+
+    @Test
+    void between_includesBothBounds() throws Exception {
+        for (TaskList list : lists()) {
+            assertEquals(List.of("meet boss", "submit report"),
+                    descriptions(list.between(at(14, 0), at(15, 0))));
+            assertEquals(List.of(), descriptions(list.between(at(14, 1), at(14, 59))));
+            assertEquals(List.of("meet boss"), descriptions(list.between(at(14, 0), at(14, 0))));
+            assertEquals(List.of(), descriptions(list.between(at(15, 0), at(14, 0))));
+        }
+    }
+
+    @Test
+    void dateOnly_deadlineEndsTheDayAndEventStartsIt() throws Exception {
+        for (TaskList list : lists()) {
+            assertEquals(List.of("all-day workshop", "meet boss", "submit report", "return book"),
+                    descriptions(list.dueOn(DAY)));
+            assertEquals(List.of("return book"),
+                    descriptions(list.between(at(23, 59), DAY.plusDays(1).atStartOfDay())));
+            assertEquals(List.of("all-day workshop"),
+                    descriptions(list.between(DAY.minusDays(1).atTime(23, 59), DAY.atStartOfDay())));
+            assertEquals(List.of("old chore", "submit report"), descriptions(list.overdue(at(23, 59))));
+            assertEquals(List.of("old chore", "submit report", "return book"),
+                    descriptions(list.overdue(DAY.plusDays(1).atStartOfDay())));
+        }
+    }
+
+    @Test
+    void overdue_isStrictlyBeforeNowAndSkipsEvents() throws Exception {
+        for (TaskList list : lists()) {
+            // The event starts and the deadline is due exactly now: neither is overdue yet.
+            assertEquals(List.of("old chore"), descriptions(list.overdue(at(14, 0))));
+            assertEquals(List.of("old chore"), descriptions(list.overdue(at(15, 0))));
+            assertEquals(List.of("old chore", "submit report"), descriptions(list.overdue(at(15, 1))));
+            assertEquals(List.of("meet boss"), descriptions(list.between(at(14, 0), at(14, 0))));
+        }
+    }
+
+    @Test
+    void overdue_followsMarkUnmarkAndSnooze() throws Exception {
+        LocalDateTime later = DAY.plusDays(5).atStartOfDay();
+        for (TaskList list : lists()) {
+            assertEquals(List.of("old chore", "submit report", "return book"), descriptions(list.overdue(later)));
+            list.mark(3);
+            assertEquals(List.of("old chore", "return book"), descriptions(list.overdue(later)));
+            list.unmark(3);
+            list.mark(1);
+            assertEquals(List.of("submit report", "return book"), descriptions(list.overdue(later)));
+            list.snoozeDeadline(4, "2019-12-30");
+            assertEquals(List.of("submit report"), descriptions(list.overdue(later)));
+            list.snoozeDeadline(4, "2019-11-30 0800");
+            list.delete(3);
+            assertEquals(List.of("return book"), descriptions(list.overdue(later)));
+        }
+    }
+
+    @Test
+    void index_walksOnlyUnfinishedDeadlines() {
+        TimeIndex index = new TimeIndex();
+        TaskList source = list();
+        for (Task t : source.asList()) {
+            index.add(t);
+        }
+        Task report = source.asList().get(2);
+        long later = TimeIndex.epoch(DAY.plusDays(5).atStartOfDay());
+        assertEquals(TimeIndex.scanOverdue(source.asList(), later), index.overdue(later));
+        report.markAsDone();
+        index.doneChanged(report);
+        assertEquals(TimeIndex.scanOverdue(source.asList(), later), index.overdue(later));
+        report.markAsNotDone();
+        index.doneChanged(report);
+        index.doneChanged(report);
+        assertEquals(TimeIndex.scanOverdue(source.asList(), later), index.overdue(later));
+        assertEquals(3, index.overdue(later).size());
+    }
+
+    /** The same tasks in an ordinary list and a compact one, whose queries take different paths. */
+    private static List<TaskList> lists() {
+        return List.of(list(), TaskList.compact(list().asList()));
+    }
+
+    private static TaskList list() {
+        TaskList list = new TaskList();
+        list.addDeadline("old chore", "2019-11-01");
+        list.addEvent("meet boss", "2019-12-02 1400", "2019-12-02 1500");
+        list.addDeadline("submit report", "2019-12-02 15:00");
+        list.addDeadline("return book", "2019-12-02");
+        list.addEvent("all-day workshop", "2019-12-02", "2019-12-03");
+        list.addDeadline("someday", "when the cat allows");
+        list.addTodo("read book");
+        return list;
+    }
+
+    private static LocalDateTime at(int hour, int minute) {
+        return DAY.atTime(hour, minute);
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks) {
+            out.add(t.getDescription());
+        }
+        return out;
+    }
+}
@@ -8,8 +8,16 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import garfield.core.TaskList;
 import garfield.task.Task;
@@ -57,4 +65,308 @@ public class StorageTest {
         assertEquals("2019-12-02 1400", e.getFrom());
         assertEquals("2019-12-02 1500", e.getTo());
     }
-}
\ No newline at end of file
+
+    @Test
+    void journal_replayedOnLoad() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        storage.load();
+
+        TaskList list = new TaskList();
+        storage.appendAdded(list.addTodo("read book"));
+        storage.appendAdded(list.addDeadline("return book", "2019-12-02"));
+        storage.appendAdded(list.addTodo("throw away"));
+        list.mark(1);
+        storage.appendMarked(1, true);
+        list.delete(3);
+        storage.appendDeleted(3);
+        Task d = list.snoozeDeadline(2, "2019-12-09");
+        storage.appendSnoozed(2, d);
+        storage.flush();
+
+        List<Task> loaded = new Storage(file).load();
+        assertEquals(2, loaded.size());
+        assertTrue(loaded.get(0).isDone());
+        assertEquals("2019-12-09", ((Deadline) loaded.get(1)).getBy());
+    }
+
+    @Test
+    void binarySnapshot_roundTripKeepsParsedDates() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.bin");
+        Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, Storage.Format.BINARY);
+
+        TaskList list = new TaskList();
+        list.addTodo("read book");
+        list.addDeadline("return book", "2019-12-02");
+        list.addEvent("meet boss", "2019-12-02 1400", "later");
+        list.mark(2);
+        storage.save(list.asList());
+
+        List<Task> loaded = new Storage(file).load();
+        assertEquals(3, loaded.size());
+        assertEquals(list.asList().toString(), loaded.toString());
+
+        Deadline d = (Deadline) loaded.get(1);
+        assertTrue(d.isDone());
+        assertEquals("2019-12-02", d.getBy());
+        assertEquals(LocalDate.of(2019, 12, 2), d.getDate());
+
+        Event e = (Event) loaded.get(2);
+        assertEquals(LocalDateTime.of(2019, 12, 2, 14, 0), e.getFromDateTime());
+        assertEquals("later", e.getTo());
+    }
+
+    @Test
+    void binarySnapshot_damagedRecordDroppedAlone() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.bin");
+        Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, Storage.Format.BINARY);
+        TaskList list = new TaskList();
+        list.addTodo("alpha");
+        list.addTodo("bravo");
+        list.addTodo("charlie");
+        storage.save(list.asList());
+        storage.appendMarked(3, true);
+        storage.close();
+
+        byte[] bytes = Files.readAllBytes(file);
+        int at = new String(bytes, StandardCharsets.ISO_8859_1).indexOf("bravo");
+        bytes[at] ^= 1;
+        Files.write(file, bytes);
+        Storage damaged = new Storage(file);
+        List<Task> loaded = damaged.load();
+        assertEquals("[alpha, charlie]", descriptions(loaded));
+        assertTrue(loaded.get(1).isDone());
+        assertEquals(1, damaged.getLastLoadReport().checksumFailures);
+        assertEquals(2, new Storage(file).load().size());
+    }
+
+    @Test
+    void convert_roundTripsBetweenFormats() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        TaskList list = new TaskList();
+        list.addTodo("read book");
+        list.addEvent("meet boss", "2019-12-02 1400", "2019-12-02 1500");
+        storage.save(list.asList());
+        storage.appendAdded(list.addDeadline("return book", "2019-12-02"));
+        storage.flush();
+        String expected = list.asList().toString();
+
+        assertEquals(3, Storage.convert(file, Storage.Format.BINARY));
+        assertTrue(BinarySnapshot.isBinary(file));
+        assertEquals(expected, new Storage(file).load().toString());
+
+        assertEquals(3, Storage.convert(file, Storage.Format.NDJSON));
+        assertFalse(BinarySnapshot.isBinary(file));
+        assertEquals(expected, new Storage(file).load().toString());
+    }
+
+    @Test
+    void taskIds_surviveDeleteAndReload() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+
+        TaskList list = new TaskList(storage.load());
+        storage.appendAdded(list.addTodo("a"));
+        storage.appendAdded(list.addTodo("b"));
+        storage.appendAdded(list.addTodo("c"));
+        list.delete(2);
+        storage.appendDeleted(2);
+        storage.flush();
+
+        TaskList reloaded = new TaskList(new Storage(file).load());
+        assertEquals(0, reloaded.getAssignedOnLoad());
+        assertEquals(1, reloaded.asList().get(0).getId());
+        assertEquals(3, reloaded.asList().get(1).getId());
+        assertEquals("c", reloaded.getById(3).getDescription());
+        assertEquals(4, reloaded.addTodo("d").getId());
+        storage.close();
+    }
+
+    @Test
+    void tornJournalTail_droppedAndFoldedIntoSnapshot() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        storage.load();
+        TaskList list = new TaskList();
+        storage.appendAdded(list.addTodo("a"));
+        storage.appendAdded(list.addTodo("b"));
+        storage.appendMarked(1, true);
+        storage.close();
+
+        // Simulate a crash halfway through the last record, then a bit flip in it.
+        Path journal = file.resolveSibling("garfield.jsonl.journal");
+        byte[] bytes = Files.readAllBytes(journal);
+        Files.write(journal, Arrays.copyOf(bytes, bytes.length - 4));
+        Files.write(journal, "\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        List<Task> loaded = new Storage(file).load();
+        assertEquals(2, loaded.size());
+        assertFalse(loaded.get(0).isDone());
+        assertFalse(Files.exists(journal));
+
+        Storage reopened = new Storage(file);
+        assertEquals(2, reopened.load().size());
+        reopened.appendAdded(new Todo("c"));
+        reopened.close();
+        assertEquals(3, new Storage(file).load().size());
+    }
+
+    @Test
+    void unappliableJournalRecord_stopsReplay() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        storage.load();
+        storage.appendAdded(new Todo("a"));
+        storage.appendDeleted(5);
+        storage.appendMarked(1, true);
+        storage.close();
+
+        Storage reopened = new Storage(file);
+        List<Task> loaded = reopened.load();
+        LoadReport report = reopened.getLastLoadReport();
+        assertEquals(1, loaded.size());
+        assertFalse(loaded.get(0).isDone());
+        assertEquals(1, report.journalRecords);
+        assertEquals(2, report.tornRecords);
+        assertFalse(report.isClean());
+    }
+
+    @Test
+    void damagedSnapshot_keepsJournalOrRestoresBackup() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        storage.setBackupCount(2);
+        TaskList list = new TaskList();
+        list.addTodo("first");
+        storage.save(list.asList());
+        list.addTodo("second");
+        list.addTodo("third");
+        storage.save(list.asList());
+        storage.appendMarked(3, true);
+        storage.appendAdded(new Todo("fourth"));
+        storage.close();
+
+        // "second" is c2Vjb25k in Base64; the record and the trailer checksums now fail.
+        Files.writeString(file, Files.readString(file).replace("c2Vjb25k", "c2Vjb25l"));
+        Storage salvaged = new Storage(file);
+        List<Task> loaded = salvaged.load();
+        LoadReport report = salvaged.getLastLoadReport();
+        assertEquals("[first, third, fourth]", descriptions(loaded));
+        assertTrue(loaded.get(1).isDone());
+        assertEquals(1, report.checksumFailures);
+        assertEquals(2, report.journalRecords);
+        assertFalse(report.isRestoredFromBackup);
+        assertTrue(Files.exists(file.resolveSibling("garfield.jsonl.damaged")));
+        assertEquals(3, new Storage(file).load().size());
+
+        // Without its trailer the damage cannot be pinned down, so the backup wins.
+        String text = Files.readString(file);
+        Files.writeString(file, text.substring(0, text.lastIndexOf("// end")));
+        Storage restored = new Storage(file);
+        loaded = restored.load();
+        assertEquals("[first]", descriptions(loaded));
+        assertTrue(restored.getLastLoadReport().isRestoredFromBackup);
+        assertEquals(1, new Storage(file).load().size());
+    }
+
+    @Test
+    void loadReport_countsChecksumFailures() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file);
+        TaskList list = new TaskList();
+        list.addTodo("alpha");
+        list.addTodo("bravo");
+        list.addTodo("charlie");
+        storage.save(list.asList());
+        storage.appendMarked(1, true);
+        storage.close();
+
+        Storage clean = new Storage(file);
+        clean.load();
+        LoadReport report = clean.getLastLoadReport();
+        assertEquals(3, report.records);
+        assertEquals(1, report.journalRecords);
+        assertTrue(report.isClean());
+
+        // "bravo" is YnJhdm8= in Base64; flip it to "brawo" without touching the checksum.
+        String text = Files.readString(file).replace("YnJhdm8=", "YnJhd28=");
+        Files.writeString(file, text);
+        Storage damaged = new Storage(file);
+        List<Task> loaded = damaged.load();
+        report = damaged.getLastLoadReport();
+        assertEquals(2, loaded.size());
+        assertEquals(2, report.records);
+        assertEquals(1, report.checksumFailures);
+        assertFalse(report.isClean());
+    }
+
+    @Test
+    void segmentedSave_rewritesOnlyChangedSegments() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        Storage storage = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, Storage.Format.SEGMENTED);
+        TaskList list = new TaskList(storage.load());
+        storage.trackChanges(list);
+        for (int i = 0; i < 3 * Segments.SPAN; i++) {
+            list.addTodo("item " + i);
+        }
+        storage.save(list.asList());
+        long full = storage.getLastSegmentBytesWritten();
+
+        list.mark(Segments.SPAN + 5);
+        storage.save(list.asList());
+        long delta = storage.getLastSegmentBytesWritten();
+        assertTrue(delta < full / 2, delta + " of " + full);
+
+        list.delete(1);
+        list.addTodo("last");
+        storage.save(list.asList());
+        storage.close();
+
+        List<Task> loaded = new Storage(file, Storage.DEFAULT_COMPACT_THRESHOLD, Storage.Format.SEGMENTED).load();
+        assertEquals(list.asList().toString(), loaded.toString());
+        assertEquals(list.size(), new Storage(file).load().size());
+    }
+
+    @Test
+    void chunkedLoad_splitsOnlyBetweenRecords() throws Exception {
+        Path file = tempDir.resolve("data").resolve("garfield.jsonl");
+        TaskList list = new TaskList();
+        for (int i = 0; i < 200; i++) {
+            list.addTodo("item " + i + " " + "x".repeat(i % 7));
+        }
+        new Storage(file).save(list.asList());
+        byte[] bytes = Files.readAllBytes(file);
+
+        ChunkedLoader loader = new ChunkedLoader(256);
+        LoadReport.Counts counts = new LoadReport.Counts();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        List<Task> loaded = loader.load(file, pool, counts);
+        pool.shutdown();
+
+        assertEquals(200, loaded.size());
+        for (int i = 0; i < 200; i++) {
+            assertEquals(list.asList().get(i).getDescription(), loaded.get(i).getDescription());
+        }
+        assertEquals(0, counts.skipped + counts.checksumFailures);
+        List<ChunkTiming> timings = loader.timings();
+        assertTrue(timings.size() > 1);
+        // The first even cut lands inside a record, so the boundary logic had to move it.
+        long step = bytes.length / 16;
+        assertTrue(bytes[(int) step - 1] != '\n');
+        long end = 0;
+        for (ChunkTiming t : timings) {
+            assertEquals(end, t.offset);
+            assertTrue(t.offset == 0 || bytes[(int) t.offset - 1] == '\n');
+            end = t.offset + t.bytes;
+        }
+        assertEquals(bytes.length, end);
+    }
+
+    private static String descriptions(List<Task> tasks) {
+        List<String> out = new ArrayList<>();
+        for (Task t : tasks) {
+            out.add(t.getDescription());
+        }
+        return out.toString();
+    }
+}
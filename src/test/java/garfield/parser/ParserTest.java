@@ -41,8 +41,46 @@ public class ParserTest {
         assertTrue(ex.getMessage().toLowerCase().contains("usage"));
     }
 
+    @Test
+    void parseSnooze_byOrRange() throws Exception {
+        Parser.Parsed p = Parser.parse("snooze 2 /by 2019-12-09");
+        assertEquals(Parser.CommandType.SNOOZE, p.type);
+        assertEquals(2, p.index);
+        assertEquals("2019-12-09", p.by);
+
+        Parser.Parsed e = Parser.parse("snooze 1 /from 2019-12-02 1400 /to 2019-12-02 1600");
+        assertEquals("2019-12-02 1400", e.from);
+        assertEquals("2019-12-02 1600", e.to);
+        assertThrows(GarfieldException.class, () -> Parser.parse("snooze 1"));
+    }
+
+    @Test
+    void parseBetween_splitsDateTimeBounds() throws Exception {
+        Parser.Parsed p = Parser.parse("between 2019-12-02 1000 2019-12-04");
+        assertEquals(Parser.CommandType.BETWEEN, p.type);
+        assertEquals("2019-12-02 1000", p.from);
+        assertEquals("2019-12-04", p.to);
+
+        Parser.Parsed q = Parser.parse("between 2019-12-02 2019-12-04 18:00");
+        assertEquals("2019-12-02", q.from);
+        assertEquals("2019-12-04 18:00", q.to);
+        assertThrows(GarfieldException.class, () -> Parser.parse("between 2019-12-02"));
+    }
+
     @Test
     void parseUnknown_throws() {
         assertThrows(GarfieldException.class, () -> Parser.parse("blorp"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void parseList_pageAndPageSize() throws Exception {
+        Parser.Parsed p = Parser.parse("list 3 --page-size 200");
+        assertEquals(Parser.CommandType.LIST, p.type);
+        assertEquals(3, p.page);
+        assertEquals(200, p.pageSize);
+
+        Parser.Parsed bare = Parser.parse("list");
+        assertEquals(null, bare.page);
+        assertThrows(GarfieldException.class, () -> Parser.parse("list --page-size 0"));
+    }
+}
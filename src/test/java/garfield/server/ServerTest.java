@@ -0,0 +1,120 @@
+// Credit to Tsay Yong for code inspiration.
+package garfield.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import garfield.core.CommandExecutor;
+import garfield.io.Storage;
+
+public class ServerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void pipelinedCommands_repliedInOrderThenClosedOnBye() throws Exception {
+        CommandExecutor executor = CommandExecutor.open(tempDir.resolve("garfield.jsonl"));
+        Server server = new Server(executor, 0);
+        server.start();
+        try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            s.setSoTimeout(10_000);
+            OutputStream out = s.getOutputStream();
+            // Split mid-line to check that partial lines are reassembled.
+            out.write("todo read book\r\ntodo ret".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            Thread.sleep(50);
+            out.write("urn book\nmark 9\nlist\nbye\ntodo never run\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            String reply = readToEnd(s.getInputStream());
+            int first = reply.indexOf("[T][ ] read book");
+            int second = reply.indexOf("Now you have 2 tasks");
+            int error = reply.indexOf("Error: That task number is out of range.");
+            int listed = reply.indexOf("2.[T][ ] return book");
+            int bye = reply.indexOf("Bye. Hope to see you again soon!");
+            assertTrue(first >= 0 && first < second && second < error && error < listed && listed < bye, reply);
+            assertEquals(-1, reply.indexOf("never run"));
+        } finally {
+            server.close();
+        }
+        assertEquals(2, executor.getTasks().size());
+        executor.close();
+    }
+
+    @Test
+    void idleConnections_doNotBlockActiveOnes() throws Exception {
+        CommandExecutor executor = CommandExecutor.open(tempDir.resolve("garfield.jsonl"));
+        Server server = new Server(executor, 0);
+        server.start();
+        List<Socket> idle = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                idle.add(new Socket(InetAddress.getLoopbackAddress(), server.getPort()));
+            }
+            try (Socket s = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+                s.setSoTimeout(10_000);
+                s.getOutputStream().write("todo a\nfind a\nbye\n".getBytes(StandardCharsets.UTF_8));
+                String reply = readToEnd(s.getInputStream());
+                assertTrue(reply.contains("1.[T][ ] a"), reply);
+            }
+            for (long deadline = System.currentTimeMillis() + 5000;
+                    server.getConnectionCount() != 200 && System.currentTimeMillis() < deadline; ) {
+                Thread.sleep(10);
+            }
+            assertEquals(200, server.getConnectionCount());
+        } finally {
+            for (Socket s : idle) {
+                s.close();
+            }
+            server.close();
+            executor.close();
+        }
+    }
+
+    @Test
+    void batches_refusedSoClientsCannotShareOne() throws Exception {
+        Path file = tempDir.resolve("garfield.jsonl");
+        CommandExecutor executor = CommandExecutor.open(file);
+        Server server = new Server(executor, 0);
+        server.start();
+        try (Socket a = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+                Socket b = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            a.setSoTimeout(10_000);
+            b.setSoTimeout(10_000);
+            a.getOutputStream().write("begin\ntodo from a\nbye\n".getBytes(StandardCharsets.UTF_8));
+            String replyA = readToEnd(a.getInputStream());
+            b.getOutputStream().write("todo from b\ncommit\nbye\n".getBytes(StandardCharsets.UTF_8));
+            String replyB = readToEnd(b.getInputStream());
+
+            assertTrue(replyA.contains("Error: " + Server.NO_BATCHES), replyA);
+            assertTrue(replyB.contains("Error: " + Server.NO_BATCHES), replyB);
+            assertFalse(executor.isInBatch());
+        } finally {
+            server.close();
+        }
+        executor.close();
+        // Both adds were journaled as they ran, with no batch holding them back.
+        assertEquals(2, new Storage(file).load().size());
+    }
+
+    private static String readToEnd(InputStream in) throws Exception {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        in.transferTo(buf);
+        return buf.toString(StandardCharsets.UTF_8);
+    }
+}